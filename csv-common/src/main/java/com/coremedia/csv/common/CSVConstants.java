@@ -15,6 +15,16 @@ public class CSVConstants {
    */
   public static String HTTP_HEADER_CONTENT_DISPOSITION = "Content-Disposition";
 
+  /**
+   * The HTTP header with the cost of each column of a profiled export.
+   */
+  public static String HTTP_HEADER_PROFILE_COLUMNS = "X-CSV-Profile-Columns";
+
+  /**
+   * The HTTP header with the cost of the records of each content type of a profiled export.
+   */
+  public static String HTTP_HEADER_PROFILE_TYPES = "X-CSV-Profile-Types";
+
   /**
    * The name of the column containing a CSV record's export status.
    */
@@ -76,6 +86,12 @@ public class CSVConstants {
    */
   public static String COLUMN_PUBLICATION_DATE = "PublicationDate";
 
+  /**
+   * The name of the optional column containing a fingerprint of a CSV record's values and the content's version. The
+   * importer skips records whose fingerprint still matches.
+   */
+  public static String COLUMN_FINGERPRINT = "Fingerprint";
+
   /**
    * The content's property name which holds the value of its Subject Taxonomies.
    */
@@ -0,0 +1,82 @@
+package com.coremedia.csv.common;
+
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.content.Version;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Computes the fingerprint of a CSV record, which is written to the {@link CSVConstants#COLUMN_FINGERPRINT} column on
+ * export. The fingerprint is a hash of all other values of the record and of the version of the content. When the
+ * record is imported again, the importer recomputes the fingerprint from the uploaded values and the current version
+ * of the content: if both still match, neither the record nor the content has changed and the record can be skipped.
+ */
+public final class CSVFingerprint {
+
+  /**
+   * The digest algorithm used for fingerprints.
+   */
+  private static final String ALGORITHM = "SHA-256";
+
+  private CSVFingerprint() {
+  }
+
+  /**
+   * Checks whether a column takes part in the fingerprint. The fingerprint column itself and the export status are
+   * excluded.
+   *
+   * @param header the header of the column
+   * @return true if the value of the column is part of the fingerprint. Else, false.
+   */
+  public static boolean isFingerprinted(String header) {
+    return !CSVConstants.COLUMN_FINGERPRINT.equals(header) && !CSVConstants.COLUMN_STATUS.equals(header);
+  }
+
+  /**
+   * Computes the fingerprint of a CSV record.
+   *
+   * @param values  the values of all fingerprinted columns of the record, in column order. Null values are treated as
+   *                empty Strings, just as they are written to the CSV.
+   * @param content the content the record was generated from
+   * @return the fingerprint
+   */
+  public static String compute(List<String> values, Content content) {
+    MessageDigest digest = createDigest();
+    for (String value : values) {
+      byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+      // prefix each value with its length, so that values cannot be shifted between columns
+      digest.update(intToBytes(bytes.length));
+      digest.update(bytes);
+    }
+    digest.update(getVersionToken(content).getBytes(StandardCharsets.UTF_8));
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+  }
+
+  /**
+   * Gets a String identifying the current version of a content.
+   *
+   * @param content the content
+   * @return the id of the checked-in version, or an empty String if the content has never been checked in
+   */
+  private static String getVersionToken(Content content) {
+    Version version = content.getCheckedInVersion();
+    return version == null ? "" : version.getId();
+  }
+
+  private static byte[] intToBytes(int value) {
+    return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform is required to support SHA-256
+      throw new IllegalStateException(ALGORITHM + " is not supported", e);
+    }
+  }
+}
@@ -11,6 +11,14 @@ public interface VfCsvConstants {
      * Common URL-Slug used by client and server.
      */
     String GET_NAVIGATION_FOR_URI_PATH = "/getNavigationForUriPath";
+    /**
+     * Common URL-Slug used by client and server to resolve many uri paths in one request.
+     */
+    String GET_NAVIGATIONS_FOR_URI_PATHS = "/getNavigationsForUriPaths";
+    /**
+     * Request parameter holding the uri path(s) to resolve.
+     */
+    String URI_PATH_PARAMETER = "uriPath";
     /**
      * <LinkProperty Name="customCanonical" LinkType="coremedia:///cap/contenttype/CMLinkable" xlink:href=".."/>
      */
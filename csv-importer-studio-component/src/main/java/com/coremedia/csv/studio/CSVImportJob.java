@@ -0,0 +1,248 @@
+package com.coremedia.csv.studio;
+
+import com.coremedia.csv.importer.ImportProgressListener;
+import com.coremedia.csv.importer.ImportThrottle;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An asynchronous CSV import started from Studio. The job collects the outcome of each CSV record while the import is
+ * running, so that its progress can be polled and a per-record report can be downloaded.
+ */
+public class CSVImportJob implements ImportProgressListener {
+
+  /**
+   * The state of an import job.
+   */
+  public enum State {
+    QUEUED, RUNNING, COMPLETED, FAILED
+  }
+
+  /**
+   * The headers of the report CSV.
+   */
+  private static final String[] REPORT_HEADERS = {"Record", "Id", "Outcome", "Message"};
+
+  /**
+   * The id of the job.
+   */
+  private final String id;
+
+  /**
+   * The name of the template used to map the CSV headers to content properties.
+   */
+  private final String template;
+
+  /**
+   * The id of the user who submitted the job.
+   */
+  private final String userId;
+
+  /**
+   * The time the job was submitted, in milliseconds.
+   */
+  private final long submissionTime;
+
+  /**
+   * The throttle which limits the pace of the import and measures its current rate.
+   */
+  private final ImportThrottle throttle;
+
+  private volatile State state = State.QUEUED;
+  private volatile long startTime;
+  private volatile long endTime;
+  private volatile String error;
+
+  private final AtomicLong processed = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+  private final AtomicLong unchanged = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  /**
+   * The outcome of each processed record.
+   */
+  private final List<RecordResult> results = new ArrayList<>();
+
+  /**
+   * Constructor.
+   *
+   * @param id       the id of the job
+   * @param template the name of the template used to map the CSV headers to content properties
+   * @param userId   the id of the user who submitted the job
+   * @param throttle the throttle which limits the pace of the import
+   */
+  public CSVImportJob(String id, String template, String userId, ImportThrottle throttle) {
+    this.id = id;
+    this.template = template;
+    this.userId = userId;
+    this.throttle = throttle;
+    this.submissionTime = System.currentTimeMillis();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public void recordProcessed(long recordNumber, String contentId, Outcome outcome, String message) {
+    switch (outcome) {
+      case WRITTEN:
+        written.incrementAndGet();
+        break;
+      case UNCHANGED:
+        unchanged.incrementAndGet();
+        break;
+      default:
+        failed.incrementAndGet();
+    }
+    synchronized (results) {
+      results.add(new RecordResult(recordNumber, contentId, outcome, message));
+    }
+    processed.incrementAndGet();
+  }
+
+  /**
+   * Marks the job as running.
+   */
+  void started() {
+    startTime = System.currentTimeMillis();
+    state = State.RUNNING;
+  }
+
+  /**
+   * Marks the job as finished.
+   *
+   * @param error the reason the job failed, or null if it completed
+   */
+  void finished(String error) {
+    this.error = error;
+    endTime = System.currentTimeMillis();
+    state = error == null ? State.COMPLETED : State.FAILED;
+  }
+
+  /**
+   * Gets the status of the job, as it is returned to Studio.
+   *
+   * @return the status properties of the job
+   */
+  public Map<String, Object> getStatus() {
+    Map<String, Object> status = new LinkedHashMap<>();
+    status.put("id", id);
+    status.put("template", template);
+    status.put("state", state.name());
+    status.put("processed", processed.get());
+    status.put("written", written.get());
+    status.put("unchanged", unchanged.get());
+    status.put("failed", failed.get());
+    status.put("rowsPerSecond", getRowsPerSecond());
+    if (state == State.RUNNING) {
+      status.put("currentRecordRate", throttle.getRecordRate());
+      status.put("currentWriteRate", throttle.getWriteRate());
+      status.put("writeLatency", throttle.getWriteLatency());
+      status.put("recordLimit", throttle.getRecordLimit());
+      status.put("writeLimit", throttle.getWriteLimit());
+    }
+    status.put("submissionTime", submissionTime);
+    if (startTime > 0) {
+      status.put("startTime", startTime);
+    }
+    if (endTime > 0) {
+      status.put("endTime", endTime);
+    }
+    if (error != null) {
+      status.put("error", error);
+    }
+    return status;
+  }
+
+  /**
+   * Gets the average number of records processed per second since the job was started.
+   *
+   * @return the rate, 0 if the job has not been started yet
+   */
+  public double getRowsPerSecond() {
+    if (startTime == 0) {
+      return 0;
+    }
+    long elapsed = (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime;
+    return elapsed > 0 ? processed.get() * 1000d / elapsed : 0;
+  }
+
+  /**
+   * Writes the outcome of each record processed so far as CSV, ordered by record number.
+   *
+   * @param writer the writer to write the report to
+   * @throws IOException if the report cannot be written
+   */
+  public void writeReport(Writer writer) throws IOException {
+    List<RecordResult> snapshot;
+    synchronized (results) {
+      snapshot = new ArrayList<>(results);
+    }
+    snapshot.sort(Comparator.comparingLong(result -> result.recordNumber));
+    CSVPrinter printer = new CSVPrinter(writer, CSVFormat.EXCEL.withHeader(REPORT_HEADERS));
+    for (RecordResult result : snapshot) {
+      printer.printRecord(result.recordNumber, result.contentId, result.outcome, result.message);
+    }
+    printer.flush();
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getUserId() {
+    return userId;
+  }
+
+  public ImportThrottle getThrottle() {
+    return throttle;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  /**
+   * Checks whether the job has finished, successfully or not.
+   *
+   * @return true if the job has finished. Else, false.
+   */
+  public boolean isFinished() {
+    return state == State.COMPLETED || state == State.FAILED;
+  }
+
+  /**
+   * Gets the time the job finished, in milliseconds.
+   *
+   * @return the end time, 0 if the job has not finished
+   */
+  public long getEndTime() {
+    return endTime;
+  }
+
+  /**
+   * The outcome of a single CSV record.
+   */
+  private static class RecordResult {
+    private final long recordNumber;
+    private final String contentId;
+    private final Outcome outcome;
+    private final String message;
+
+    RecordResult(long recordNumber, String contentId, Outcome outcome, String message) {
+      this.recordNumber = recordNumber;
+      this.contentId = contentId;
+      this.outcome = outcome;
+      this.message = message;
+    }
+  }
+}
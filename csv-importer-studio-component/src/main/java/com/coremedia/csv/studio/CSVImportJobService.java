@@ -0,0 +1,298 @@
+package com.coremedia.csv.studio;
+
+import com.coremedia.cap.common.CapSession;
+import com.coremedia.cap.content.ContentRepository;
+import com.coremedia.csv.common.CSVConfig;
+import com.coremedia.csv.importer.CSVParserHelper;
+import com.coremedia.csv.importer.ImportThrottle;
+import com.coremedia.csv.importer.PropertyValueObjectProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs CSV imports started from Studio as asynchronous jobs.
+ * <p>
+ * Jobs run on a bounded thread pool with a bounded queue, so that imports cannot take up the request threads of
+ * Studio. If the queue is full, further jobs are rejected. Finished jobs are kept for a configurable time, so that
+ * their report can be downloaded.
+ */
+public class CSVImportJobService implements DisposableBean {
+
+  /**
+   * The default number of imports running at the same time.
+   */
+  public static final int DEFAULT_MAX_CONCURRENT_JOBS = 1;
+
+  /**
+   * The default number of imports waiting to be run.
+   */
+  public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+  /**
+   * The default time in milliseconds for which finished jobs are kept.
+   */
+  public static final long DEFAULT_JOB_RETENTION = TimeUnit.HOURS.toMillis(1);
+
+  /**
+   * Counter used to name the worker threads.
+   */
+  private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+  /**
+   * Import process logger.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(CSVImportJobService.class);
+
+  /**
+   * The content repository to import the content into.
+   */
+  private ContentRepository contentRepository;
+
+  /**
+   * Configuration mapping CSV headers to content properties
+   */
+  private CSVConfig csvConfig;
+
+  /**
+   * The prefix of the preview CAE REST URLs, passed on to the importer.
+   */
+  private String previewRestUrlPrefix;
+
+  /**
+   * The registry in which imports record their metrics. If null, they are recorded in the global registry.
+   */
+  private MeterRegistry meterRegistry;
+
+  /**
+   * The processors of custom properties, by property name. If null, the default processors of the importer are used.
+   */
+  private Map<String, PropertyValueObjectProcessor> propertyValueObjectProcessors;
+
+  private int maxConcurrentJobs = DEFAULT_MAX_CONCURRENT_JOBS;
+  private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+  private long jobRetention = DEFAULT_JOB_RETENTION;
+
+  /**
+   * The executor running the jobs, created on first use.
+   */
+  private ThreadPoolExecutor executor;
+
+  /**
+   * All jobs which are queued, running or have finished within the retention time, by id.
+   */
+  private final Map<String, CSVImportJob> jobs = new ConcurrentHashMap<>();
+
+  /**
+   * Submits an import of an uploaded CSV file. The file is copied to a temporary file, so that it remains available
+   * after the request has finished.
+   *
+   * @param template the name of the template used to map the CSV headers to content properties
+   * @param file     the uploaded CSV file
+   * @param throttle the throttle which limits the pace of the import
+   * @return the submitted job
+   * @throws IOException                if the uploaded file cannot be copied
+   * @throws RejectedExecutionException if the maximum number of waiting jobs has been reached
+   */
+  public CSVImportJob submit(String template, MultipartFile file, ImportThrottle throttle) throws IOException {
+    evictFinishedJobs();
+    CapSession session = contentRepository.getConnection().getSession();
+    CSVImportJob job = new CSVImportJob(UUID.randomUUID().toString(), template, session.getUser().getId(), throttle);
+    Map<String, String> reportHeadersToContentProperties = csvConfig.getReportHeadersToContentProperties(template);
+
+    File csvFile = File.createTempFile("csv-import-", ".csv");
+    try {
+      file.transferTo(csvFile);
+      jobs.put(job.getId(), job);
+      getExecutor().execute(() -> run(job, csvFile, reportHeadersToContentProperties, session));
+    } catch (IOException | RuntimeException e) {
+      jobs.remove(job.getId());
+      deleteFile(csvFile);
+      throw e;
+    }
+    logger.info("Submitted CSV import job {} with template {}.", job.getId(), template);
+    return job;
+  }
+
+  /**
+   * Gets a job.
+   *
+   * @param id the id of the job
+   * @return the job, or null if no such job exists
+   */
+  public CSVImportJob getJob(String id) {
+    return jobs.get(id);
+  }
+
+  /**
+   * Runs an import job in a worker thread, on behalf of the user who submitted it.
+   */
+  private void run(CSVImportJob job, File csvFile, Map<String, String> reportHeadersToContentProperties,
+                   CapSession session) {
+    CapSession previousSession = session.activate();
+    job.started();
+    try (CSVParser parser = new CSVParser(new BufferedReader(new InputStreamReader(new FileInputStream(csvFile),
+            StandardCharsets.UTF_8)), CSVFormat.EXCEL.withHeader())) {
+      CSVParserHelper handler = new CSVParserHelper(false, contentRepository, logger, previewRestUrlPrefix);
+      handler.setProgressListener(job);
+      handler.setThrottle(job.getThrottle());
+      if (meterRegistry != null) {
+        handler.setMeterRegistry(meterRegistry);
+      }
+      if (propertyValueObjectProcessors != null) {
+        handler.setPropertyValueObjectProcessors(propertyValueObjectProcessors);
+      }
+      handler.parseCSV(parser, reportHeadersToContentProperties);
+      job.finished(null);
+      logger.info("CSV import job {} completed.", job.getId());
+    } catch (Exception e) {
+      logger.error("CSV import job " + job.getId() + " failed.", e);
+      job.finished(e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+    } finally {
+      deleteFile(csvFile);
+      if (previousSession != null) {
+        previousSession.activate();
+      } else {
+        session.deactivate();
+      }
+    }
+  }
+
+  /**
+   * Removes all jobs which have finished longer ago than the retention time.
+   */
+  private void evictFinishedJobs() {
+    long now = System.currentTimeMillis();
+    for (Iterator<CSVImportJob> iterator = jobs.values().iterator(); iterator.hasNext(); ) {
+      CSVImportJob job = iterator.next();
+      if (job.isFinished() && now - job.getEndTime() > jobRetention) {
+        iterator.remove();
+      }
+    }
+  }
+
+  private synchronized ThreadPoolExecutor getExecutor() {
+    if (executor == null) {
+      executor = new ThreadPoolExecutor(maxConcurrentJobs, maxConcurrentJobs, 0L, TimeUnit.MILLISECONDS,
+              new ArrayBlockingQueue<Runnable>(queueCapacity),
+              runnable -> {
+                Thread thread = new Thread(runnable, "csv-import-" + THREAD_COUNTER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              },
+              new ThreadPoolExecutor.AbortPolicy());
+    }
+    return executor;
+  }
+
+  private static void deleteFile(File file) {
+    if (file.exists() && !file.delete()) {
+      logger.warn("Could not delete temporary file {}.", file.getPath());
+    }
+  }
+
+  /**
+   * Stops the executor. Running imports are interrupted.
+   */
+  @Override
+  public synchronized void destroy() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Sets the content repository.
+   *
+   * @param contentRepository the content repository to set
+   */
+  public void setContentRepository(ContentRepository contentRepository) {
+    this.contentRepository = contentRepository;
+  }
+
+  /**
+   * Sets the CSV configuration
+   *
+   * @param csvConfig the csv configuration to set
+   */
+  public void setCsvConfig(CSVConfig csvConfig) {
+    this.csvConfig = csvConfig;
+  }
+
+  /**
+   * Sets the prefix of the preview CAE REST URLs.
+   *
+   * @param previewRestUrlPrefix the prefix to set
+   */
+  public void setPreviewRestUrlPrefix(String previewRestUrlPrefix) {
+    this.previewRestUrlPrefix = previewRestUrlPrefix;
+  }
+
+  /**
+   * Sets the processors of custom properties.
+   *
+   * @param propertyValueObjectProcessors the processors, by property name
+   */
+  public void setPropertyValueObjectProcessors(Map<String, PropertyValueObjectProcessor>
+                                                       propertyValueObjectProcessors) {
+    this.propertyValueObjectProcessors = propertyValueObjectProcessors;
+  }
+
+  /**
+   * Sets the registry in which imports record their metrics. Set by Spring if the actuator of Studio provides one.
+   *
+   * @param meterRegistry the registry
+   */
+  @Autowired(required = false)
+  public void setMeterRegistry(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  /**
+   * Sets the number of imports running at the same time.
+   *
+   * @param maxConcurrentJobs the number of imports, must be positive
+   */
+  public void setMaxConcurrentJobs(int maxConcurrentJobs) {
+    this.maxConcurrentJobs = maxConcurrentJobs;
+  }
+
+  /**
+   * Sets the number of imports waiting to be run. Further imports are rejected.
+   *
+   * @param queueCapacity the number of imports, must be positive
+   */
+  public void setQueueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+  }
+
+  /**
+   * Sets the time for which finished jobs are kept.
+   *
+   * @param jobRetention the retention time in milliseconds
+   */
+  public void setJobRetention(long jobRetention) {
+    this.jobRetention = jobRetention;
+  }
+}
@@ -5,10 +5,18 @@ import com.coremedia.cap.user.Group;
 import com.coremedia.cap.user.User;
 import com.coremedia.cap.user.UserRepository;
 import com.coremedia.csv.common.CSVConfig;
+import com.coremedia.csv.common.CSVConstants;
 import com.coremedia.csv.importer.CSVParserHelper;
+import com.coremedia.csv.importer.ImportThrottle;
+import com.coremedia.csv.importer.PropertyValueObjectProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -23,7 +31,10 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringWriter;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Handles Studio API requests for a CSV based on search parameters.
@@ -32,6 +43,11 @@ import java.util.List;
 @RestController
 public class CSVImportResource {
 
+  /**
+   * Error message when the throttle parameters of an import are invalid.
+   */
+  private static final String INVALID_THROTTLE_MSG = "The rate limits and the target latency must not be negative.";
+
   @Value("${studio.previewRestUrlPrefix:}")
   private String previewRestUrlPrefix; // VFC_ADAPT
 
@@ -55,6 +71,21 @@ public class CSVImportResource {
    */
   private List<String> authorizedGroups;
 
+  /**
+   * Runs imports as asynchronous jobs.
+   */
+  private CSVImportJobService importJobService;
+
+  /**
+   * The processors of custom properties, by property name. If null, the default processors of the importer are used.
+   */
+  private Map<String, PropertyValueObjectProcessor> propertyValueObjectProcessors;
+
+  /**
+   * The registry in which imports record their metrics. If null, they are recorded in the global registry.
+   */
+  private MeterRegistry meterRegistry;
+
   /**
    * Import process logger.
    */
@@ -96,26 +127,146 @@ public class CSVImportResource {
     this.authorizedGroups = authorizedGroups;
   }
 
+  /**
+   * Sets the service which runs imports as asynchronous jobs.
+   *
+   * @param importJobService the service to set
+   */
+  public void setImportJobService(CSVImportJobService importJobService) {
+    this.importJobService = importJobService;
+  }
+
+  /**
+   * Sets the processors of custom properties.
+   *
+   * @param propertyValueObjectProcessors the processors, by property name
+   */
+  public void setPropertyValueObjectProcessors(Map<String, PropertyValueObjectProcessor>
+                                                       propertyValueObjectProcessors) {
+    this.propertyValueObjectProcessors = propertyValueObjectProcessors;
+  }
+
+  /**
+   * Sets the registry in which imports record their metrics. Set by Spring if the actuator of Studio provides one.
+   *
+   * @param meterRegistry the registry
+   */
+  @Autowired(required = false)
+  public void setMeterRegistry(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
   @PostMapping(value = "importcsv/uploadfile",
           produces = "text/json",
           consumes = "multipart/form-data")
   public ResponseEntity importCSV(@RequestParam("template") String template, // VFC_ADAPT
-                                  @RequestParam("file") MultipartFile file) throws IOException {
+                                  @RequestParam("file") MultipartFile file,
+                                  @RequestParam(value = "maxRecordsPerSecond", defaultValue = "0")
+                                          long maxRecordsPerSecond,
+                                  @RequestParam(value = "maxWritesPerSecond", defaultValue = "0")
+                                          long maxWritesPerSecond,
+                                  @RequestParam(value = "targetLatency", defaultValue = "0")
+                                          long targetLatency) throws IOException {
 
     // Check that the user is a member of the requisite group
     if (restrictToAuthorizedGroups && !isAuthorized()) {
       return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User does not have authorized access");
     }
+    if (maxRecordsPerSecond < 0 || maxWritesPerSecond < 0 || targetLatency < 0) {
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(INVALID_THROTTLE_MSG);
+    }
 
     boolean autoPublish = false;
     BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()));
     CSVParser parser = new CSVParser(reader, CSVFormat.EXCEL.withHeader());
     CSVParserHelper handler = new CSVParserHelper(autoPublish, contentRepository, logger, previewRestUrlPrefix);
+    if (propertyValueObjectProcessors != null) {
+      handler.setPropertyValueObjectProcessors(propertyValueObjectProcessors);
+    }
+    handler.setThrottle(new ImportThrottle(maxRecordsPerSecond, maxWritesPerSecond, targetLatency));
+    if (meterRegistry != null) {
+      handler.setMeterRegistry(meterRegistry);
+    }
     handler.parseCSV(parser, csvConfig.getReportHeadersToContentProperties(template));
 
     return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(handler.getFirstContent());
   }
 
+  /**
+   * Submits an asynchronous import of an uploaded CSV file.
+   */
+  @PostMapping(value = "importcsv/jobs",
+          produces = "application/json",
+          consumes = "multipart/form-data")
+  public ResponseEntity submitImportJob(@RequestParam("template") String template,
+                                        @RequestParam("file") MultipartFile file,
+                                        @RequestParam(value = "maxRecordsPerSecond", defaultValue = "0")
+                                                long maxRecordsPerSecond,
+                                        @RequestParam(value = "maxWritesPerSecond", defaultValue = "0")
+                                                long maxWritesPerSecond,
+                                        @RequestParam(value = "targetLatency", defaultValue = "0")
+                                                long targetLatency) throws IOException {
+
+    // Check that the user is a member of the requisite group
+    if (restrictToAuthorizedGroups && !isAuthorized()) {
+      return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("User does not have authorized access");
+    }
+    if (maxRecordsPerSecond < 0 || maxWritesPerSecond < 0 || targetLatency < 0) {
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(INVALID_THROTTLE_MSG);
+    }
+
+    try {
+      CSVImportJob job = importJobService.submit(template, file,
+              new ImportThrottle(maxRecordsPerSecond, maxWritesPerSecond, targetLatency));
+      return ResponseEntity.status(HttpStatus.ACCEPTED).contentType(MediaType.APPLICATION_JSON)
+              .body(job.getStatus());
+    } catch (RejectedExecutionException e) {
+      return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+              .body("Too many CSV imports are waiting to be run. Please try again later.");
+    }
+  }
+
+  /**
+   * Gets the progress of an import job.
+   */
+  @GetMapping(value = "importcsv/jobs/{id}", produces = "application/json")
+  public ResponseEntity getImportJob(@PathVariable("id") String id) {
+    CSVImportJob job = getOwnJob(id);
+    if (job == null) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+    return ResponseEntity.ok().cacheControl(CacheControl.noCache()).contentType(MediaType.APPLICATION_JSON)
+            .body(job.getStatus());
+  }
+
+  /**
+   * Gets the outcome of each record processed so far by an import job, as CSV.
+   */
+  @GetMapping(value = "importcsv/jobs/{id}/report", produces = "text/csv")
+  public ResponseEntity getImportJobReport(@PathVariable("id") String id) throws IOException {
+    CSVImportJob job = getOwnJob(id);
+    if (job == null) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+    StringWriter report = new StringWriter();
+    job.writeReport(report);
+    return ResponseEntity.ok().cacheControl(CacheControl.noCache())
+            .header(CSVConstants.HTTP_HEADER_CONTENT_DISPOSITION, "attachment; filename=import-" + id + ".csv")
+            .contentType(MediaType.valueOf(CSVConstants.CSV_MEDIA_TYPE)).body(report.toString());
+  }
+
+  /**
+   * Gets an import job, if it has been submitted by the current user.
+   *
+   * @param id the id of the job
+   * @return the job, or null if there is no such job of the current user
+   */
+  private CSVImportJob getOwnJob(String id) {
+    CSVImportJob job = importJobService.getJob(id);
+    User user = contentRepository.getConnection().getSession().getUser();
+    return job != null && job.getUserId().equals(user.getId()) ? job : null;
+  }
+
   private boolean isAuthorized() {
     if (this.authorizedGroups == null || this.authorizedGroups.isEmpty())
       return false;
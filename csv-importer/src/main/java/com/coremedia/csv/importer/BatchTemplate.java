@@ -29,23 +29,58 @@ public abstract class BatchTemplate<T> {
      * Loop through the batch and execute the Batch job.
      *
      * @param objects The object - collection to split into batches
+     * @throws BatchFailedException if a batch failed, telling how many objects were in the batches executed before
      */
     public void execute(Collection<T> objects) {
         com.coremedia.cap.undoc.content.ContentRepository undocRepository =
                 (com.coremedia.cap.undoc.content.ContentRepository) contentRepository;
         int i = 0;
-        com.coremedia.cap.undoc.content.ContentRepository.Batch batch = undocRepository.createBatch();
-        for (T object : objects) {
-            process(batch, object);
-            if (++i % batchSize == 0) {
+        int completed = 0;
+        try {
+            com.coremedia.cap.undoc.content.ContentRepository.Batch batch = undocRepository.createBatch();
+            for (T object : objects) {
+                process(batch, object);
+                if (++i % batchSize == 0) {
+                    batch.executeBatch();
+                    completed = i;
+                    logger.debug("Batch " + i + "/" + objects.size() + "...");
+                    batch = undocRepository.createBatch();
+                }
+            }
+            if (i % batchSize > 0) {
                 batch.executeBatch();
-                logger.debug("Batch " + i + "/" + objects.size() + "...");
-                batch = undocRepository.createBatch();
+                logger.debug("Last partial batch: " + i);
             }
+        } catch (RuntimeException e) {
+            throw new BatchFailedException(completed, e);
         }
-        if (i % batchSize > 0) {
-            batch.executeBatch();
-            logger.debug("Last partial batch: " + i);
+    }
+
+    /**
+     * Thrown if a batch failed. The objects are processed in the order of the collection, so the first
+     * {@link #getCompleted() completed} objects were executed and only the others have to be retried.
+     */
+    public static class BatchFailedException extends RuntimeException {
+
+        private final int completed;
+
+        public BatchFailedException(int completed, RuntimeException cause) {
+            super(cause.getMessage(), cause);
+            this.completed = completed;
+        }
+
+        /**
+         * Gets the number of objects in the batches which were executed before the failure.
+         *
+         * @return the number of objects
+         */
+        public int getCompleted() {
+            return completed;
+        }
+
+        @Override
+        public synchronized RuntimeException getCause() {
+            return (RuntimeException) super.getCause();
         }
     }
 }
@@ -2,6 +2,8 @@ package com.coremedia.csv.importer;
 
 import com.coremedia.cap.content.Content;
 import com.coremedia.cap.content.ContentRepository;
+import com.coremedia.cap.content.Version;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 
 import java.text.SimpleDateFormat;
@@ -35,14 +37,24 @@ public class CSVContentHelper {
         this.contentPublishHelper = new ContentPublishHelper(contentRepository, logger);
     }
 
+    /**
+     * Sets the registry in which the publication of the imported content records its metrics.
+     *
+     * @param meterRegistry the registry
+     */
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        contentPublishHelper.setMeterRegistry(meterRegistry);
+    }
+
     /**
      * Imports the content by updating the content object.
      *
      * @param content          the content which to update with new properties
      * @param properties       The properties for the new CoreMedia document
-     * @param importedContents The collection of content objects to handle
+     * @param importedContents The content objects to handle, with the versions they had before they were updated
      */
-    public void importContent(Content content, Map<String, Object> properties, Collection<Content> importedContents) {
+    public void importContent(Content content, Map<String, Object> properties,
+                              Map<Content, Version> importedContents) {
         handleImportContent(content, properties, importedContents);
     }
 
@@ -50,97 +62,65 @@ public class CSVContentHelper {
      * Imports the content by updating the content object.
      *
      * @param properties       The properties for the new CoreMedia document
-     * @param importedContents The collection of content objects to handle
+     * @param importedContents The content objects to handle, with the versions they had before they were updated
      */
     public void handleImportContent(Content content, Map<String, Object> properties,
-                                    Collection<Content> importedContents) {
+                                    Map<Content, Version> importedContents) {
 
         // At this point, we've already checked to make sure the content exists - so it will not create a new one
         Content result = contentPublishHelper.updateContent(content, properties);
         if (result != null) {
-            importedContents.add(result);
+            // the content stays checked out, so that its prior version is its checked out version
+            importedContents.putIfAbsent(result, null);
         }
     }
 
     /**
-     * Establishes whether a taxonomy in a specified tag hierarchy exists within the content
+     * Imports a group of contents by updating the content objects in repository batches.
      *
-     * @param taxonomyPath the path hierarchy of the desired taxonomy tag. Must be in the form of "/taxonomy/path/1/"
-     * @param taxonomyRoot the root folder which holds the entire taxonomy hierarchy
-     * @return the taxonomy specified in the path hierarchy. If no such taxonomy exists, returns null
+     * @param updates          The new properties, by content
+     * @param importedContents The content objects to handle, to which all updated contents are added with the versions
+     *                         they had before the update, unless they are contained already
+     * @return the contents that could not be updated, with the cause of the failure
      */
-    public Content establishTax(String taxonomyPath, Content taxonomyRoot) {
-        Content content = null;
-        if (taxonomyPath != null && !taxonomyPath.isEmpty() && !taxonomyPath.equals("[]")) {
-            List<String> taxonomyList = new ArrayList<>(Arrays.asList(taxonomyPath.split("/")));
-            // clear out any empty entries that may exist from splitting the path
-            taxonomyList.removeAll(Arrays.asList("", null, " "));
-
-            // We query for our first taxonomy member in the hierarchy. In order for a tag to be a direct hierarchical
-            // child of the root tag (i.e. Subjects), it must exist within the direct children (and not in a subfolder)
-            // of that tag's respective folder
-            Set<Content> children = taxonomyRoot.getChildren();
-            for (Content taxonomyChild : children) {
-                // We've hit our final taxonomy content - we know we've found it, or that it doesn't exist
-                if (taxonomyList.isEmpty()) {
-                    break;
-                }
-                else if (taxonomyChild.getName().equals(taxonomyList.get(0))) {
-                    // Once we have our first tag we can pop that off the list and search in that tag's properties for
-                    // the rest of the hierarchy
-                    taxonomyList.remove(0);
-                    content = getChildTaxonomy(taxonomyList, taxonomyChild);
-                }
-            }
-        }
-        return content;
+    public Map<Content, Exception> importContents(Map<Content, Map<String, Object>> updates,
+                                                  Map<Content, Version> importedContents) {
+        return contentPublishHelper.updateAll(updates, importedContents);
     }
 
     /**
-     * Takes the list of taxonomy names, order by heirarcharical relationship and the parent taxonomy for the path, and
-     * finds the child tag at the end of the path.
+     * Gets the content repository in which the content is updated.
      *
-     * @param taxonomyList the list of the hierarchy, excluding the parent taxonomy
-     * @param taxonomyRoot the parent taxonomy of the hierarchy
-     * @return the taxonomy content object for the given taxonomy path of the tag parent. If not such tag exists,
-     * returns null.
+     * @return the content repository
      */
-    private Content getChildTaxonomy(List<String> taxonomyList, Content taxonomyRoot) {
-
-        // Loop until we've hit the end of the hierarchy list
-        int counter = 0;
-        while (counter != taxonomyList.size() && taxonomyRoot != null) {
-
-            // Gets the property "children" as opposed to getChildren(). 2 very different things...
-            List<Content> children = (List<Content>) taxonomyRoot.get("children");
-            for (Content childTaxonomy : children) {
-
-                // reset the taxonomy root to null - in case the child of the next tag in the path does not exist
-                taxonomyRoot = null;
-
-                // If we have a match, continue to the next tag
-                if (childTaxonomy.getName().equals(taxonomyList.get(counter))) {
-                    taxonomyRoot = childTaxonomy;
-                    counter++;
-                    break;
-                }
-            }
-        }
-        return taxonomyRoot;
+    public ContentRepository getContentRepository() {
+        return contentPublishHelper.getContentRepository();
     }
 
     /**
-     * Helper method that applies the previous approved/published state to updated content. The collection will be cleared
-     * afterwards.
+     * Helper method that applies the previous approved/published state to updated content. The contents are removed
+     * from the map once their state has been applied; the contents which remain could not be handled because of a
+     * failure of the content repository and may be retried.
      *
-     * @param importedContents The list to handle
+     * @param importedContents The content objects to handle, with the versions they had before they were updated
+     * @return the contents whose previous state could not be applied
      */
-    public void applyPreviousState(Collection<Content> importedContents) {
+    public Collection<Content> applyPreviousState(Map<Content, Version> importedContents) {
         // publish the remaining documents
-        if (!importedContents.isEmpty()) {
-            contentPublishHelper.applyPreviousState(importedContents, autoPublish);
-            importedContents.clear();
+        if (importedContents.isEmpty()) {
+            return Collections.emptyList();
         }
+        return contentPublishHelper.applyPreviousState(importedContents, autoPublish);
+    }
+
+    /**
+     * Restores the versions contents had before they were updated by a previous, interrupted run of the import.
+     *
+     * @param contents         the updated contents
+     * @param importedContents the content objects to handle, to which the contents are added with their prior versions
+     */
+    public void restorePriorVersions(Collection<Content> contents, Map<Content, Version> importedContents) {
+        contentPublishHelper.restorePriorVersions(contents, importedContents);
     }
 
     /**
@@ -156,22 +136,4 @@ public class CSVContentHelper {
         }
         return flatList;
     }
-
-    /**
-     * Establishes a transition lock based on the given path string
-     *
-     * @param path                 The (hopefully) unique identifier for each object in the lock
-     * @param transitionLockByPath The map of synchronized objects
-     * @return The lock object for the given path
-     */
-    public Object getTransitionLock(String path, Map<String, Object> transitionLockByPath) {
-        synchronized (transitionLockByPath) {
-            Object lock = transitionLockByPath.get(path);
-            if (lock == null) {
-                lock = new Object();
-                transitionLockByPath.put(path, lock);
-            }
-            return lock;
-        }
-    }
 }
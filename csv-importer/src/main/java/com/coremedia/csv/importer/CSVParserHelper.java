@@ -1,7 +1,7 @@
 package com.coremedia.csv.importer;
 
-import com.coremedia.blueprint.common.contentbeans.CMLinkable;
 import com.coremedia.cap.common.CapPropertyDescriptor;
+import com.coremedia.cap.common.CapSession;
 import com.coremedia.cap.common.CapPropertyDescriptorType;
 import com.coremedia.cap.common.DuplicateNameException;
 import com.coremedia.cap.common.IdHelper;
@@ -12,15 +12,19 @@ import com.coremedia.cap.content.Content;
 import com.coremedia.cap.content.ContentException;
 import com.coremedia.cap.content.ContentRepository;
 import com.coremedia.cap.content.ContentType;
+import com.coremedia.cap.content.Version;
 import com.coremedia.cap.struct.Struct;
 import com.coremedia.cap.struct.StructService;
+import com.coremedia.csv.common.CSVFingerprint;
 import com.coremedia.xml.Markup;
 import com.coremedia.xml.MarkupFactory;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
-import org.apache.commons.collections.map.HashedMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 
@@ -28,18 +32,26 @@ import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static com.coremedia.csv.common.CSVConstants.COLUMN_ID;
 import static com.coremedia.csv.common.CSVConstants.COLUMN_SUBJECT_TAGS;
 import static com.coremedia.csv.common.CSVConstants.PROPERTY_LOCAL_SETTINGS;
 import static com.coremedia.csv.common.CSVConstants.PROPERTY_PICTURES;
@@ -53,6 +65,21 @@ import static com.vfcorp.csv.common.VfCsvConstants.PROPERTY_CUSTOM_CANONICAL;
  */
 public class CSVParserHelper {
 
+    /**
+     * The name of the counter of the CSV records read for import.
+     */
+    public static final String METRIC_RECORDS_PARSED = "csv.import.records.parsed";
+
+    /**
+     * The name of the counter of the imported CSV records, tagged with their outcome.
+     */
+    public static final String METRIC_RECORDS = "csv.import.records";
+
+    /**
+     * The name of the timer of the content writes, recorded per batch of documents.
+     */
+    public static final String METRIC_WRITE = "csv.import.write";
+
     /**
      * The logger for this class.
      */
@@ -76,49 +103,189 @@ public class CSVParserHelper {
      */
     private Content subjectTaxonomyRootFolder;
 
+    /**
+     * The in-memory index of the subject taxonomies, used to resolve tag paths without repository reads.
+     */
+    private TaxonomyPathIndex subjectTaxonomyIndex;
+
     /**
      * Counter for the number of individual content updates imported.
      */
     private int contentImported = 0;
 
+    /**
+     * Counter for the number of CSV records skipped because they are unchanged since their export.
+     */
+    private int contentSkipped = 0;
+
+    /**
+     * Counter for the number of CSV records which could not be imported.
+     */
+    private int contentFailed = 0;
+
+    /**
+     * The meters of the import, registered by {@link #setMeterRegistry(MeterRegistry)}.
+     */
+    private Counter recordsParsedCounter;
+    private final Map<ImportProgressListener.Outcome, Counter> recordCounters =
+            new EnumMap<>(ImportProgressListener.Outcome.class);
+    private Timer writeTimer;
+
   /**
    * The first content updated in the CSV import.
    */
   private Content firstContent;
 
     /**
-     * The list of currently imported contents that have not yet been published. These contents will be published later
-     * so that it is more efficient.
+     * The currently imported contents that have not yet been published, with the versions they had before they were
+     * updated. These contents will be published later so that it is more efficient.
      */
     @NonNull
-    protected final Collection<Content> importedContents = Collections.synchronizedSet(new LinkedHashSet<Content>());
+    protected final Map<Content, Version> importedContents =
+            Collections.synchronizedMap(new LinkedHashMap<Content, Version>());
 
     /**
      * Each content that will eventually be imported may be in one of two states:
      * - un-imported (only as a file on disk)
      * - imported
-     * The lock entry in the "transitionLockByPath" map needs to be held during each state transition.
+     * The transition lock of the content's id needs to be held during each state transition.
      * While holding a transition lock, no other transition lock may be held by the same thread.
-     * The map itself should be synchronized only while retrieving or adding a lock object, so that actual
-     * content creation can run in parallel.
+     * The locks are striped: their number is fixed, and no global lock is needed to retrieve one, so that actual
+     * content updates can run in parallel.
      **/
-    protected final Map<String, Object> transitionLockByPath = new HashMap<>();
+    protected final StripedLock transitionLocks = new StripedLock(StripedLock.DEFAULT_STRIPES);
+
+    /**
+     * The content updates that have been converted but not yet written, by content. They are written in repository
+     * batches at the end of each read-ahead window.
+     */
+    private final Map<Content, Map<String, Object>> pendingWrites = Collections.synchronizedMap(
+            new LinkedHashMap<Content, Map<String, Object>>());
+
+    /**
+     * The CSV records whose updates are pending and the contents updated on their behalf: the content of the record,
+     * followed by its main picture if the picture is updated as well.
+     */
+    private final Map<ImportRecord, List<Content>> pendingRecordContents = new LinkedHashMap<>();
+
+    /**
+     * The listener which is notified of the outcome of each record, may be null.
+     */
+    private ImportProgressListener progressListener;
 
     /**
      * The general date format the reporting tool will use when converting dates into Strings.
      */
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd-yyyy HH:mm:ss");
 
+    /**
+     * The default number of documents that must be imported before performing a publish.
+     */
+    public static final int DEFAULT_PUBLICATION_BATCH_SIZE = 100;
+
+    /**
+     * The default maximum time in milliseconds that imported documents wait for publication. Zero disables the
+     * time based publication.
+     */
+    public static final long DEFAULT_PUBLICATION_FLUSH_INTERVAL = 0L;
+
     /**
      * The number of documents that must be imported before performing a publish.
      */
-    private static final int BULK_PUBLISH_INT = 100;
+    private int publicationBatchSize = DEFAULT_PUBLICATION_BATCH_SIZE;
+
+    /**
+     * The maximum time in milliseconds that imported documents wait for publication, even if the publication batch
+     * size has not been reached. Zero disables the time based publication.
+     */
+    private long publicationFlushInterval = DEFAULT_PUBLICATION_FLUSH_INTERVAL;
+
+    /**
+     * The time of the last submission of documents for publication.
+     */
+    private long lastPublicationTime;
+
+    /**
+     * The background stage which approves and publishes the imported documents while parsing continues.
+     */
+    private PublicationPipeline publicationPipeline;
+
+    /**
+     * The publication pipeline shared with the imports of other CSV files, or null if each import uses its own.
+     */
+    private PublicationPipeline sharedPublicationPipeline;
+
+    /**
+     * The journal in which the progress of the import is recorded, may be null.
+     */
+    private ImportJournal journal;
+
+    /**
+     * The throttle which limits the pace of the import, may be null.
+     */
+    private ImportThrottle throttle;
+
+    /**
+     * The shard of the records to import, or null to import all records.
+     */
+    private ImportShard shard;
+
+    /**
+     * The default number of CSV records that are read ahead and prefetched together.
+     */
+    public static final int DEFAULT_READ_AHEAD_WINDOW_SIZE = 100;
+
+    /**
+     * The number of CSV records that are read ahead and whose contents are prefetched in one batch.
+     */
+    private int readAheadWindowSize = DEFAULT_READ_AHEAD_WINDOW_SIZE;
+
+    /**
+     * The content types resolved so far, by name.
+     */
+    private final Map<String, ContentType> contentTypesByName = new ConcurrentHashMap<>();
 
     /**
      * Mapping of property name to PropertyValueObjectProcessor.
      */
     private final Map<String, PropertyValueObjectProcessor> propertyValueObjectProcessors = new HashMap<>();
 
+    /**
+     * Counter used to name the processor threads.
+     */
+    private static final AtomicInteger PROCESSOR_THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * The executor on which the processors of the current import run, acting on behalf of the importing user.
+     */
+    private Executor processorExecutor;
+
+    /**
+     * The values of the current window which have been processed in batch, by record and property name.
+     */
+    private final Map<ImportRecord, Map<String, Object>> processedWindowValues = new HashMap<>();
+
+    /**
+     * The contents prefetched for the current window, by the (numeric) id used in the CSV. Link values are resolved
+     * from this map.
+     */
+    private Map<String, Content> windowContents = Collections.emptyMap();
+
+    /**
+     * The ids of the contents referenced by the current window which do not exist.
+     */
+    private final Set<String> windowMissingContentIds = new HashSet<>();
+
+    /**
+     * The rich text values parsed in this import, by raw value.
+     */
+    private final ParsedValueCache<Markup> markupCache = new ParsedValueCache<>(ParsedValueCache.DEFAULT_CAPACITY);
+
+    /**
+     * The struct values parsed in this import, by raw value.
+     */
+    private final ParsedValueCache<Struct> structCache = new ParsedValueCache<>(ParsedValueCache.DEFAULT_CAPACITY);
+
     /**
      * Some content don't have local settings - we need to check for this.
      */
@@ -138,14 +305,14 @@ public class CSVParserHelper {
         this.logger = logger;
         this.previewRestUrlPrefix = previewRestUrlPrefix; //VFC_ADAPT
         contentHelper = new CSVContentHelper(autoPublish, contentRepository, logger);
-        // This is where you put custom property processors. This is the framework for customizations to easily create
-        // new classes to process custom properties. See PropertyValueObjectProcessor interface for implementation.
-        // Ideally, when implemented, under this line the following can be added:
+        // This is where the default custom property processors are registered. Further processors can be configured
+        // in Spring and passed to setPropertyValueObjectProcessors. See PropertyValueObjectProcessor interface for
+        // implementation.
         PropertyValueObjectProcessor processor = new CustomCanonicalPropertyProcessor(//VFC_ADAPT
             previewRestUrlPrefix, logger, contentRepository                           //VFC_ADAPT
         );                                                                            //VFC_ADAPT
         propertyValueObjectProcessors.put(PROPERTY_CUSTOM_CANONICAL, processor);      //VFC_ADAPT
-        // A Spring implementation can also be done for this
+        setMeterRegistry(Metrics.globalRegistry);
     }
 
     /**
@@ -160,77 +327,445 @@ public class CSVParserHelper {
      * @return true if the entire CSV contents were updated and imported successfully. Else, false.
      */
     public void parseCSV(CSVParser parser, Map<String, String> reportHeadersToContentProperties) {
+        parseCSV(ImportRecord.ofAll(parser), parser.getHeaderMap(), reportHeadersToContentProperties);
+    }
+
+    /**
+     * Imports CSV records, which have been read by another reader than a {@link CSVParser}, e.g. by a
+     * {@link ChunkedCSVFileReader} or a {@link CSVTokenizer}. See {@link #parseCSV(CSVParser, Map)}.
+     *
+     * @param records                          the CSV records, in their original order
+     * @param headerMap                        the column indexes of the CSV headers
+     * @param reportHeadersToContentProperties the map of all possible CSV headers and the properites mapped to into the
+     *                                         content
+     */
+    public void parseCSV(Iterable<ImportRecord> records, Map<String, Integer> headerMap,
+                         Map<String, String> reportHeadersToContentProperties) {
 
         instantiateTaxonomyProperties();
-        for (CSVRecord record : parser) {
+        publicationPipeline = sharedPublicationPipeline != null ? sharedPublicationPipeline
+                : new PublicationPipeline(PublicationPipeline.DEFAULT_QUEUE_CAPACITY, logger);
+        lastPublicationTime = System.currentTimeMillis();
+        long committedRecordNumber = journal != null ? journal.getCommittedRecordNumber() : 0;
+        // the columns are resolved once per file, records are then read by column index
+        ImportColumnPlan columnPlan = new ImportColumnPlan(headerMap, reportHeadersToContentProperties);
+        ExecutorService processorThreads = createProcessorThreads();
+        try {
+            if (journal != null) {
+                restoreUnpublishedContents(journal.getUnpublishedIds());
+            }
+            // Records are read ahead in windows, so that the contents they refer to can be fetched from the content
+            // server in a few batched round trips instead of one (or more) per record
+            List<ImportRecord> window = new ArrayList<>(readAheadWindowSize);
+            for (ImportRecord record : records) {
+                if (record.getRecordNumber() <= committedRecordNumber) {
+                    // already imported by a previous, interrupted run
+                    continue;
+                }
+                if (shard != null && !shard.contains(columnPlan.getId(record))) {
+                    // imported by another process
+                    continue;
+                }
+                window.add(record);
+                if (window.size() == readAheadWindowSize) {
+                    importWindow(window, columnPlan);
+                    window.clear();
+                }
+            }
+            if (!window.isEmpty()) { // finish importing the last window
+                importWindow(window, columnPlan);
+            }
+            performFinalImport();
+        } finally {
+            // make sure no publication is left running in the background, a shared pipeline is drained by its owner
+            if (sharedPublicationPipeline == null) {
+                publicationPipeline.drain();
+            }
+            closeTaxonomyIndex();
+            if (processorThreads != null) {
+                processorThreads.shutdownNow();
+                processorExecutor = null;
+            }
+            for (PropertyValueObjectProcessor processor : propertyValueObjectProcessors.values()) {
+                processor.importFinished();
+            }
+        }
+    }
 
-            // reset success boolean - success will be calculated per record
-            boolean success = true;
+    /**
+     * Creates the threads on which the property value object processors run, one per processor. Tasks run on behalf
+     * of the user of the current session, so that processors can read contents as in the importing thread.
+     *
+     * @return the thread pool, or null if no processors are registered
+     */
+    private ExecutorService createProcessorThreads() {
+        if (propertyValueObjectProcessors.isEmpty()) {
+            return null;
+        }
+        ExecutorService processorThreads = Executors.newFixedThreadPool(propertyValueObjectProcessors.size(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "csv-processor-" +
+                            PROCESSOR_THREAD_COUNTER.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        CapSession session = contentRepository.getConnection().getSession();
+        processorExecutor = task -> processorThreads.execute(() -> {
+            CapSession previousSession = session.activate();
+            try {
+                task.run();
+            } finally {
+                if (previousSession != null) {
+                    previousSession.activate();
+                } else {
+                    session.deactivate();
+                }
+            }
+        });
+        return processorThreads;
+    }
 
-            // reset hasLocalSettings - hasLocalSettings will be calculated per record
-            hasLocalSettings = true;
+    /**
+     * Imports a window of read-ahead CSV records. All contents referenced by the records of the window are prefetched
+     * before the first record is processed.
+     *
+     * @param window     the CSV records to import
+     * @param columnPlan the mapping of the CSV columns to content properties
+     */
+    private void importWindow(List<ImportRecord> window, ImportColumnPlan columnPlan) {
+        awaitThrottle(window.size(), 0);
+        Map<String, Content> prefetchedContents = prefetchWindow(window, columnPlan);
+        windowContents = prefetchedContents;
+        processWindowValues(window, columnPlan, prefetchedContents);
+        // the maps are reused for all records of the window, their contents are copied when they are queued
+        Map<String, Object> recordObjectProperties = new HashMap<>();
+        Map<String, Set<Content>> tagsMap = new HashMap<>();
+        for (ImportRecord record : window) {
+            recordObjectProperties.clear();
+            tagsMap.clear();
+            importRecord(record, columnPlan, prefetchedContents, recordObjectProperties, tagsMap);
+        }
+        processedWindowValues.clear();
+        windowContents = Collections.emptyMap();
+        windowMissingContentIds.clear();
+        int writeCount = pendingWrites.size();
+        awaitThrottle(0, writeCount);
+        long writeStart = System.currentTimeMillis();
+        Collection<Content> writtenContents = flushPendingWrites();
+        if (throttle != null) {
+            throttle.writesCompleted(writeCount, System.currentTimeMillis() - writeStart);
+            logger.info("Import rate: " + throttle.describe());
+        }
+        if (journal != null) {
+            ImportRecord first = window.get(0);
+            journal.windowCommitted(first.getRecordNumber(), first.getCharacterPosition(),
+                    window.get(window.size() - 1).getRecordNumber(), writtenContents);
+        }
+        checkPublishImportedContent();
+    }
 
-            // Want to check if the content this record refers to even exists
-            Content content = fetchContentFromRecord(record, contentRepository);
-            if (content != null) {
+    /**
+     * Waits until the throttle, if any, admits the records and writes of a window.
+     *
+     * @param recordCount the number of records to import
+     * @param writeCount  the number of documents to write
+     */
+    private void awaitThrottle(int recordCount, int writeCount) {
+        if (throttle == null) {
+            return;
+        }
+        try {
+            if (recordCount > 0) {
+                throttle.acquireRecords(recordCount);
+            }
+            if (writeCount > 0) {
+                throttle.acquireWrites(writeCount);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while the import was throttled.", e);
+        }
+    }
 
-                // Next we need to verify that the content types are the same. If they aren't, then we want to skip.
-                // We do not want the users to think they can update the type in the CSV and have the content
-                // magically change types. This needs to be logged and skipped - because properties change between
-                // different types of content
-                if (verifyContentType(content, record)) {
+    /**
+     * Adds the contents which have been written by a previous, interrupted run of the import but not yet been
+     * approved/published to the imported contents, so that they are published along with the contents of this run.
+     *
+     * @param unpublishedIds the ids of the contents
+     */
+    private void restoreUnpublishedContents(Collection<String> unpublishedIds) {
+        List<Content> contents = new ArrayList<>(unpublishedIds.size());
+        for (String id : unpublishedIds) {
+            Content content = contentRepository.getContent(id);
+            if (content != null && !content.isDeleted() && !content.isDestroyed()) {
+                contents.add(content);
+            }
+        }
+        if (!contents.isEmpty()) {
+            logger.info("Restoring " + contents.size() + " documents of the previous run for approval/publication.");
+            contentHelper.restorePriorVersions(contents, importedContents);
+        }
+    }
 
-                    checkPublishImportedContent();
-                    logger.info("Started parsing CSV for content with ID " + content.getId());
+    /**
+     * Imports a single CSV record into the content it refers to.
+     *
+     * @param record                 the CSV record to import
+     * @param columnPlan             the mapping of the CSV columns to content properties
+     * @param prefetchedContents     the prefetched contents of the current window, by id
+     * @param recordObjectProperties an empty map, to be filled with the properties that are to be uploaded to the
+     *                               content
+     * @param tagsMap                an empty map, to be filled with the tags of the content
+     */
+    private void importRecord(ImportRecord record, ImportColumnPlan columnPlan, Map<String, Content> prefetchedContents,
+                              Map<String, Object> recordObjectProperties, Map<String, Set<Content>> tagsMap) {
 
-                    // Currently we have 1. the Map of the CSV record containing the A) column headers and B) values
-                    // of the properties to upload and 2. the Map of A) CSV headers to B) property keys. So we need
-                    // to match the values from the columns headers to their respective property keys.
-                    Map<String, String> recordStringProperties = generateRecordPropertiesMap(
-                            reportHeadersToContentProperties, record.toMap());
+        recordsParsedCounter.increment();
 
-                    // This map is the final properties that are to be uploaded to the content
-                    Map<String, Object> recordObjectProperties = new HashedMap();
+        // reset success boolean - success will be calculated per record
+        boolean success = true;
 
-                    // This is the map of tags. Currently this map will only contain Subject taxonomies, but if this
-                    // changes we will want to add more keys to this map
-                    Map<String, Set<Content>> tagsMap = new HashMap<>();
+        // reset hasLocalSettings - hasLocalSettings will be calculated per record
+        hasLocalSettings = true;
 
-                    int id = IdHelper.parseContentId(content.getId());
+        // Want to check if the content this record refers to even exists
+        Content content = fetchContentFromRecord(record, columnPlan, contentRepository, prefetchedContents);
+        if (content == null) {
+            reportRecord(record, columnPlan.getId(record), ImportProgressListener.Outcome.FAILED, "The content does not exist or the id is " +
+                    "invalid.");
+        } else if (isUnchanged(record, columnPlan, content)) {
+            logger.debug("Skipping unchanged CSV record for content with ID {}.", content.getId());
+            contentSkipped++;
+            reportRecord(record, columnPlan.getId(record), ImportProgressListener.Outcome.UNCHANGED, "The record is unchanged since the export.");
+        } else {
 
-                    // Some content object do not have local settings, so we must account for this as getStruct will
-                    // throw an exception if this is the case and fail the import
-                    if (!content.getType().isSubtypeOf(CMLinkable.NAME)) {
-                        hasLocalSettings = false;
-                        logger.debug("Content with id {} does not have a local settings.", id);
-                    }
+            // Next we need to verify that the content types are the same. If they aren't, then we want to skip.
+            // We do not want the users to think they can update the type in the CSV and have the content
+            // magically change types. This needs to be logged and skipped - because properties change between
+            // different types of content
+            if (verifyContentType(content, columnPlan.getType(record))) {
+
+                logger.info("Started parsing CSV for content with ID " + content.getId());
+
+                // recordObjectProperties receives the final properties that are to be uploaded to the content, and
+                // tagsMap the tags. Currently tagsMap will only contain Subject taxonomies, but if this changes we
+                // will want to add more keys to this map
+
+                // The conversion of the columns into the properties of the type is compiled once per type
+                ContentTypeConversionPlan conversionPlan = columnPlan.getConversionPlan(content.getType());
+
+                // Some content object do not have local settings, so we must account for this as getStruct will
+                // throw an exception if this is the case and fail the import
+                if (!conversionPlan.hasLocalSettings()) {
+                    hasLocalSettings = false;
+                    logger.debug("Content with id {} does not have a local settings.", content.getId());
+                }
+
+                List<Content> recordContents = new ArrayList<>();
+                recordContents.add(content);
+                if (success) {
+                    // Converts all String properties to their respective objects
+                    success = convertStringProperties(content, record, columnPlan, conversionPlan,
+                            recordObjectProperties, tagsMap, recordContents);
+                }
+
+                if (success) {
+                    updateTaxonomies(content, recordObjectProperties, columnPlan, tagsMap);
+                    success = setObjectPropertiesInContent(content, recordObjectProperties);
 
-                    if (success) {
-                        // Converts all String properties to their respective objects
-                        success = convertStringProperties(content, recordStringProperties, recordObjectProperties,
-                                tagsMap);
+                    if (success && (!recordObjectProperties.isEmpty() || recordContents.size() > 1)) {
+                        pendingRecordContents.put(record, recordContents);
+                    } else if (success) {
+                        reportRecord(record, columnPlan.getId(record), ImportProgressListener.Outcome.UNCHANGED, "No properties to write.");
                     }
+                }
+                if (!success) {
+                    reportRecord(record, columnPlan.getId(record), ImportProgressListener.Outcome.FAILED, "The properties could not be " +
+                            "converted or written.");
+                }
+            } else {
+                reportRecord(record, columnPlan.getId(record), ImportProgressListener.Outcome.FAILED, "The content is not of the expected type.");
+            }
+        }
+    }
+
+    /**
+     * Notifies the progress listener, if any, of the outcome of a record.
+     *
+     * @param record    the CSV record
+     * @param contentId the content id given in the record, may be null
+     * @param outcome   the outcome of the record
+     * @param message   a description of the outcome
+     */
+    private void reportRecord(ImportRecord record, String contentId, ImportProgressListener.Outcome outcome,
+                              String message) {
+        if (outcome == ImportProgressListener.Outcome.FAILED) {
+            contentFailed++;
+        }
+        recordCounters.get(outcome).increment();
+        if (progressListener != null) {
+            progressListener.recordProcessed(record.getRecordNumber(), contentId, outcome, message);
+        }
+    }
 
-                    if (success) {
-                        updateTaxonomies(content, recordObjectProperties, parser, tagsMap);
-                        success = setObjectPropertiesInContent(content, recordObjectProperties);
+    /**
+     * Prefetches all contents referenced by a window of CSV records: the contents to update as well as the targets of
+     * their link properties. The contents are fetched from the content server with
+     * {@link ContentRepository#withPrefetch}, so that later reads of their types and properties are served locally.
+     * The ids of contents which do not exist are collected in {@link #windowMissingContentIds}.
+     *
+     * @param window     the CSV records for which to prefetch contents
+     * @param columnPlan the mapping of the CSV columns to content properties
+     * @return the prefetched contents, mapped by the (numeric) id used in the CSV
+     */
+    private Map<String, Content> prefetchWindow(List<ImportRecord> window, ImportColumnPlan columnPlan) {
+        Set<String> contentIds = new LinkedHashSet<>();
+        for (ImportRecord record : window) {
+            String contentId = columnPlan.getId(record);
+            if (StringUtils.isNumeric(contentId) && !contentId.isEmpty()) {
+                contentIds.add(contentId);
+                collectLinkTargetIds(record, columnPlan, contentIds);
+            }
+        }
 
-                        if (success && !recordObjectProperties.isEmpty()) {
-                          if(firstContent == null) {
-                            firstContent = content;
-                          }
-                            contentImported++;
+        Map<String, Content> contentsById = new HashMap<>();
+        List<Content> contentList = new ArrayList<>();
+        for (String contentId : contentIds) {
+            try {
+                Content content = contentRepository.getContent(contentId);
+                if (content != null) {
+                    contentsById.put(contentId, content);
+                    contentList.add(content);
+                } else {
+                    windowMissingContentIds.add(contentId);
+                }
+            } catch (Exception e) {
+                // the record will be reported when it is processed
+                logger.debug("Could not prefetch content with id {}", contentId, e);
+            }
+        }
+        if (!contentList.isEmpty()) {
+            long start = System.currentTimeMillis();
+            // Iterating the collection triggers the batched retrieval of the contents
+            int prefetched = 0;
+            for (Content content : contentRepository.withPrefetch(contentList, readAheadWindowSize)) {
+                prefetched++;
+                // the state has been fetched along with the content, so the existence check is local
+                if (content.isDestroyed()) {
+                    String contentId = Integer.toString(IdHelper.parseContentId(content.getId()));
+                    contentsById.remove(contentId);
+                    windowMissingContentIds.add(contentId);
+                }
+            }
+            logger.debug("Prefetched {} contents for {} records in {} ms.", prefetched, window.size(),
+                    System.currentTimeMillis() - start);
+        }
+        return contentsById;
+    }
+
+    /**
+     * Processes the values of all properties with a {@link PropertyValueObjectProcessor} in a window of CSV records in
+     * batch. The processors of all properties run concurrently. Their results are kept in
+     * {@link #processedWindowValues} until the records have been imported. Values of records whose content has not
+     * been prefetched, and values of batches which fail, are processed one by one when their record is imported.
+     *
+     * @param window             the CSV records to process
+     * @param columnPlan         the mapping of the CSV columns to content properties
+     * @param prefetchedContents the prefetched contents of the window, by id
+     */
+    private void processWindowValues(List<ImportRecord> window, ImportColumnPlan columnPlan,
+                                     Map<String, Content> prefetchedContents) {
+        Map<String, List<ImportRecord>> recordsByProperty = new LinkedHashMap<>();
+        Map<String, CompletableFuture<List<Object>>> futuresByProperty = new LinkedHashMap<>();
+        for (int i = 0; i < columnPlan.getPropertyCount(); i++) {
+            String propertyName = columnPlan.getPropertyName(i);
+            PropertyValueObjectProcessor processor = propertyValueObjectProcessors.get(propertyName);
+            if (processor == null) {
+                continue;
+            }
+            List<ImportRecord> records = new ArrayList<>();
+            List<Content> contents = new ArrayList<>();
+            List<Object> values = new ArrayList<>();
+            for (ImportRecord record : window) {
+                String value = columnPlan.getPropertyValue(record, i);
+                Content content = prefetchedContents.get(columnPlan.getId(record));
+                if (value != null && content != null) {
+                    records.add(record);
+                    contents.add(content);
+                    values.add(value);
+                }
+            }
+            if (!records.isEmpty()) {
+                try {
+                    futuresByProperty.put(propertyName,
+                            processor.processBatchAsync(propertyName, contents, values, processorExecutor));
+                    recordsByProperty.put(propertyName, records);
+                } catch (Exception e) {
+                    // the values will be processed one by one
+                    logger.warn("Could not process the values of property " + propertyName + " in batch", e);
+                }
+            }
+        }
+        for (Map.Entry<String, CompletableFuture<List<Object>>> entry : futuresByProperty.entrySet()) {
+            String propertyName = entry.getKey();
+            List<ImportRecord> records = recordsByProperty.get(propertyName);
+            try {
+                List<Object> results = entry.getValue().join();
+                if (results.size() != records.size()) {
+                    logger.warn("The processor of property {} returned {} values for {} records, the values will be " +
+                            "processed one by one", propertyName, results.size(), records.size());
+                    continue;
+                }
+                for (int i = 0; i < records.size(); i++) {
+                    processedWindowValues.computeIfAbsent(records.get(i), record -> new HashMap<>())
+                            .put(propertyName, results.get(i));
+                }
+            } catch (Exception e) {
+                // the values will be processed one by one
+                logger.warn("Could not process the values of property " + propertyName + " in batch", e);
+            }
+        }
+    }
+
+    /**
+     * Collects the ids of the link targets of a CSV record, so they can be prefetched along with the content of the
+     * record. Only properties which are links according to the content type named in the record are considered.
+     * Taxonomies, pictures and custom processed properties are resolved differently and are not collected.
+     *
+     * @param record             the CSV record from which to collect link target ids
+     * @param columnPlan the mapping of the CSV columns to content properties
+     * @param contentIds the set of ids to which link target ids are added
+     */
+    private void collectLinkTargetIds(ImportRecord record, ImportColumnPlan columnPlan, Set<String> contentIds) {
+        ContentType contentType = resolveContentType(columnPlan.getType(record));
+        if (contentType == null) {
+            return;
+        }
+        ContentTypeConversionPlan conversionPlan = columnPlan.getConversionPlan(contentType);
+        for (int i = 0; i < columnPlan.getPropertyCount(); i++) {
+            String propertyName = columnPlan.getPropertyName(i);
+            if (propertyName.equals(PROPERTY_SUBJECT_TAGS) ||
+                    propertyName.contains(PROPERTY_PREFIX_PICTURES) ||
+                    propertyValueObjectProcessors.containsKey(propertyName)) {
+                continue;
+            }
+            if (conversionPlan.getPropertyType(i) == CapPropertyDescriptorType.LINK) {
+                String value = columnPlan.getPropertyValue(record, i);
+                if (value != null && !value.isEmpty()) {
+                    for (String link : convertObjectStringToStringList(value)) {
+                        if (StringUtils.isNumeric(link)) {
+                            contentIds.add(Integer.toString(IdHelper.parseContentId(link)));
                         }
                     }
                 }
             }
         }
-        performFinalImport();
     }
 
     /**
      * Instantiates the taxonomy properties that are needed when updating taxonomies in the content. Checks to verify
-     * that the head folder for subject taxonomies exist and saves the content object of that folder.
+     * that the head folder for subject taxonomies exist and saves the content object of that folder. Builds the index
+     * of all subject taxonomies below that folder.
      *
      * @return true if the configured content is present for taxonomies. Else, false.
      */
@@ -245,65 +780,106 @@ public class CSVParserHelper {
             success = false;
         } else {
             logger.info("Taxonomy root path is registered: " + subjectTaxonomyRootPath);
+            closeTaxonomyIndex();
+            subjectTaxonomyIndex = new TaxonomyPathIndex(contentRepository, subjectTaxonomyRootFolder, logger);
+            subjectTaxonomyIndex.open();
         }
         return success;
     }
 
     /**
-     * Fetches the Content from CoreMedia specified by the Id column in the CSVRecord, if available.
+     * Fetches the Content from CoreMedia specified by the Id column in the ImportRecord, if available.
      *
-     * @param record     the CSVRecord from which to pull the Content Id
-     * @param repository the repository to search for the Content Id
+     * @param record             the ImportRecord from which to pull the Content Id
+     * @param columnPlan         the mapping of the CSV columns to content properties
+     * @param repository         the repository to search for the Content Id
+     * @param prefetchedContents the contents prefetched for the current window, by id
      * @return the content corresponding to the CSV record, or null if not found.
      */
-    private Content fetchContentFromRecord(CSVRecord record, ContentRepository repository) {
+    private Content fetchContentFromRecord(ImportRecord record, ImportColumnPlan columnPlan, ContentRepository repository,
+                                           Map<String, Content> prefetchedContents) {
         Content content = null;
-        String contentId = record.get(COLUMN_ID);
+        String contentId = columnPlan.getId(record);
         //Validate if the contentId is a string and not empty
         if (StringUtils.isNumeric(contentId) && !contentId.isEmpty()) {
             if (contentId != null && !contentId.isEmpty()) {
                 try {
-                    content = repository.getContent(contentId);
+                    content = prefetchedContents.get(contentId);
+                    if (content == null) {
+                        content = repository.getContent(contentId);
+                    }
                 } catch (Exception e){
                     logger.error("Skipping this CSV record because Unexpected Exception in getting the content " +
-                            "using the record Id (id : " + record.get("Id") + " )", e);
+                            "using the record Id (id : " + contentId + " )", e);
                 }
             }
             if (content == null) {
-                int id = IdHelper.parseContentId(record.get("Id"));
+                int id = IdHelper.parseContentId(contentId);
                 logger.error(String.format("Content with Id %d does not exist. This record has been skipped.", id));
             }
         }
         else {
-            logger.error("Skip parsing CSV for record id (" + record.get("Id") + ") because it is empty" +
+            logger.error("Skip parsing CSV for record id (" + contentId + ") because it is empty" +
                     " or not a valid id.");
         }
         return content;
     }
 
+    /**
+     * Checks whether a CSV record is unchanged since its export. This is the case if the record carries a fingerprint,
+     * which still matches the fingerprint computed from the uploaded values and the current version of the content.
+     *
+     * @param record     the CSV record to check
+     * @param columnPlan the mapping of the CSV columns to content properties
+     * @param content    the content the record refers to
+     * @return true if the record can be skipped. Else, false.
+     */
+    private boolean isUnchanged(ImportRecord record, ImportColumnPlan columnPlan, Content content) {
+        String fingerprint = columnPlan.getFingerprint(record);
+        if (fingerprint == null || fingerprint.isEmpty()) {
+            return false;
+        }
+        return fingerprint.equals(CSVFingerprint.compute(columnPlan.getFingerprintedValues(record), content));
+    }
+
+    /**
+     * Resolves a content type by name. Content types do not change while the importer is running, so they are looked
+     * up only once.
+     *
+     * @param typeName the name of the content type
+     * @return the content type, or null if no such content type exists
+     */
+    @Nullable
+    private ContentType resolveContentType(@Nullable String typeName) {
+        if (typeName == null || typeName.isEmpty()) {
+            return null;
+        }
+        return contentTypesByName.computeIfAbsent(typeName, contentRepository::getContentType);
+    }
+
     /**
      * Verifies that the Content Type of the Content in the Content Repository matches that of the type gathered from
      * the CSV Record.
      *
-     * @param content the Content in the Content Repository
-     * @param record  the CSV Record containing the corresponding content
+     * @param content  the Content in the Content Repository
+     * @param typeName the name of the Content Type given in the CSV Record
      * @return True if the Content Types in the record and the repository match. Else, false
      */
-    private boolean verifyContentType(Content content, CSVRecord record) {
+    private boolean verifyContentType(Content content, String typeName) {
         boolean success;
         ContentType currentContentType = content.getType();
-        ContentType expectedContentType = contentRepository.getContentType(record.get("Type"));
+        ContentType expectedContentType = resolveContentType(typeName);
         if (currentContentType != null) {
             success = currentContentType.equals(expectedContentType);
             if (!success) {
-                int id = IdHelper.parseContentId(record.get("Id"));
+                int id = IdHelper.parseContentId(content.getId());
                 logger.error(String.format("Content with Id %d is not of the expected type. Expected: %s." +
                                 " Actual: %s. This record has been skipped.", id, expectedContentType.getName(),
                         currentContentType.getName()));
             }
         } else {
             success = false;
-            int id = IdHelper.parseContentId(record.get("Id"));
+            int id = IdHelper.parseContentId(content.getId());
             logger.error(String.format("Could not ascerrtain the Content Type of content with ID {}. This record has " +
                     "been skipped", id));
         }
@@ -311,43 +887,24 @@ public class CSVParserHelper {
     }
 
     /**
-     * Checks to see if the number of imported content has reached its threshold to be published. Because publishing
-     * content can be an expensive operation, we do this in bulk to prevent hangs.
+     * Checks to see if the number of imported content has reached its threshold to be published, or if the imported
+     * content has waited for the configured flush interval. Because publishing content can be an expensive operation,
+     * we do this in bulk and in the background, while parsing continues.
      */
     private void checkPublishImportedContent() {
+        long now = System.currentTimeMillis();
+        boolean flushIntervalElapsed = publicationFlushInterval > 0 && !importedContents.isEmpty() &&
+                now - lastPublicationTime >= publicationFlushInterval;
         // Publish only when we hit out bulk publish amount
-        if (contentImported > 0 && (contentImported % BULK_PUBLISH_INT) == 0) {
+        if (importedContents.size() >= publicationBatchSize || flushIntervalElapsed) {
 
             // publish in between, because the overall process takes to long.
             // //Try to finish up what you can.
-            contentHelper.applyPreviousState(importedContents);
+            publicationPipeline.submit(importedContents, contentHelper, journal);
+            lastPublicationTime = now;
         }
     }
 
-    /**
-     * Takes the map of the CSV record containing the A) column headers and B) values of the properties to upload and
-     * the Map of A) CSV headers to B) property keys. Converts this into a single map of the property keys and their
-     * string values.
-     *
-     * @param reportHeadersToContentProperties the map of CSV headers with the matching property keys
-     * @param recordMap                        the map of the CSV record containing the CSV headers and the String
-     *                                         values of the properties
-     * @return a Map containing the property keys and the property values, gathered by the two specified maps
-     */
-    private Map<String, String> generateRecordPropertiesMap(Map<String, String> reportHeadersToContentProperties,
-                                                            Map<String, String> recordMap) {
-        Map<String, String> contentPropertiesAndValues = new HashMap<>();
-        Set<String> reportHeadersOfProperties = reportHeadersToContentProperties.keySet();
-
-        for (String reportHeaderOfProperty : reportHeadersOfProperties) {
-            String contentPropertyName = reportHeadersToContentProperties.get(reportHeaderOfProperty);
-            String contentPropertyValue = recordMap.get(reportHeaderOfProperty);
-            contentPropertiesAndValues.put(contentPropertyName, contentPropertyValue);
-        }
-
-        return contentPropertiesAndValues;
-    }
-
     /**
      * Compares the taxonomies calculated from the CSV record to the taxonomies of the actual content and verifies
      * whether they have changed and need to be updated. If the content's taxonomies do need to be updated, they will
@@ -355,17 +912,18 @@ public class CSVParserHelper {
      *
      * @param content                the respective content in the repository to the CSV record
      * @param recordObjectProperties the map of properties which to update the content
-     * @param parser                 the CSV parser which verifies the record entry for the content's taxonomies
+     * @param columnPlan             the mapping of the CSV columns, which verifies the record entry for the content's
+     *                               taxonomies
      * @param tagsMap                the map of taxonomies calculated from the CSV record
      */
-    private void updateTaxonomies(Content content, Map<String, Object> recordObjectProperties, CSVParser parser,
-                                  Map<String, Set<Content>> tagsMap) {
+    private void updateTaxonomies(Content content, Map<String, Object> recordObjectProperties,
+                                  ImportColumnPlan columnPlan, Map<String, Set<Content>> tagsMap) {
         // We need to verify that the tags are different before adding them to the update content
         // list
         List<Content> subjectTaxonomies = contentHelper.flattenTagsMap(tagsMap);
         List<Content> existingSubjectTaxonomies = (List<Content>) content.get(PROPERTY_SUBJECT_TAGS);
         if (existingSubjectTaxonomies != null) {
-            if (parser.getHeaderMap().containsKey(COLUMN_SUBJECT_TAGS) &&
+            if (columnPlan.hasColumn(COLUMN_SUBJECT_TAGS) &&
                     !listEqualsIgnoreOrder(subjectTaxonomies, existingSubjectTaxonomies)) {
                 recordObjectProperties.put(PROPERTY_SUBJECT_TAGS, subjectTaxonomies);
             }
@@ -376,46 +934,52 @@ public class CSVParserHelper {
     }
 
     /**
-     * For the specified content, converts a mapping of properties their string values into their respective objects and
-     * populates another mapping, containing the property name and the object values. If any property is the same value
+     * For the specified content, converts the string values of the properties in a CSV record into their respective
+     * objects and populates a mapping, containing the property name and the object values. If any property is the same value
      * as the property which currently exists in the content, it will not be added to the map. If an error is
      * encountered while setting the properties, this will stop updating any more properties which have not yet been
      * set.
      *
      * @param content                the content for which to update its properties
-     * @param recordStringProperties the mapping of the property names and their string values, which are to be
-     *                               converted
+     * @param record                 the CSV record containing the string values, which are to be converted
+     * @param columnPlan             the mapping of the CSV columns to content properties
+     * @param conversionPlan         the conversion of the columns into the properties of the content's type
      * @param objectProperties       the mapping of property names and their respective object values, which is to be
      *                               populated
      * @param tagsMap                the mapping of tags for the specified content object that is to be updated
+     * @param recordContents         the contents updated on behalf of the record, to which the main picture is added
+     *                               if its update has been queued
      * @return true if all properties were converted successfully. Else, false.
      */
-    private boolean convertStringProperties(Content content, Map<String, String> recordStringProperties,
-                                            Map<String, Object> objectProperties, Map<String, Set<Content>> tagsMap) {
+    private boolean convertStringProperties(Content content, ImportRecord record, ImportColumnPlan columnPlan,
+                                            ContentTypeConversionPlan conversionPlan,
+                                            Map<String, Object> objectProperties, Map<String, Set<Content>> tagsMap,
+                                            List<Content> recordContents) {
         boolean success = true;
-        for (Map.Entry<String, String> entry : recordStringProperties.entrySet()) {
-            String propertyName = entry.getKey();
-            Object propertyValueObject = entry.getValue();
+        // the properties of all picture columns are collected, so that the picture is updated once per record
+        Map<String, Object> pictureProperties = new HashMap<>();
+        for (int i = 0; i < columnPlan.getPropertyCount(); i++) {
+            String propertyName = columnPlan.getPropertyName(i);
+            Object propertyValueObject = columnPlan.getPropertyValue(record, i);
             try {
                 // transform the values with regards to the configured mappings
                 if (propertyValueObject != null) {
-                    Object processedPropertyValueObject = processPropertyValueObject(content, propertyName,
+                    Object processedPropertyValueObject = processPropertyValueObject(content, record, propertyName,
                             propertyValueObject);
 
-                    if (propertyName.equals(PROPERTY_CUSTOM_CANONICAL)) { //VFC_ADAPT
-                        propertyName = PROPERTY_LOCAL_SETTINGS;           //VFC_ADAPT
-                    }                                                     //VFC_ADAPT
+                    propertyName = ContentTypeConversionPlan.getTargetPropertyName(propertyName); //VFC_ADAPT
 
                     // Properties which require special handling...
                     if (propertyName.contains(PROPERTY_PREFIX_PICTURES)) {
-                        success = handlePicture(content, propertyName, processedPropertyValueObject);
+                        success = handlePicture(content, i, propertyName, processedPropertyValueObject, columnPlan,
+                                pictureProperties);
                     }
                     else if (propertyName.equals(PROPERTY_SUBJECT_TAGS)) {
                         success = handleTaxonomies(propertyName, tagsMap, processedPropertyValueObject);
                     }
                     else {
-                        success = handleRegularProperty(content, propertyName, processedPropertyValueObject,
-                                objectProperties);
+                        success = handleRegularProperty(content, propertyName, conversionPlan.getPropertyType(i),
+                                processedPropertyValueObject, objectProperties);
                     }
                 }
                 // If any property fails to set - we want to break out of this loop
@@ -430,6 +994,13 @@ public class CSVParserHelper {
                 logger.debug("End mapping of property " + propertyName);
             }
         }
+        if (success && !pictureProperties.isEmpty()) {
+            Content mainPicture = getMainPicture(content);
+            success = queuePictureProperties(content, mainPicture, pictureProperties);
+            if (success) {
+                recordContents.add(mainPicture);
+            }
+        }
         if (!success) {
             logger.error(String.format("An error has occurred while updating content %s. This record" +
                     " has been skipped.", content.getId()));
@@ -439,17 +1010,24 @@ public class CSVParserHelper {
 
     /**
      * Manipulates/validates property value object if PropertyValueObjectProcessor is configured for given property name.
+     * Values which have already been processed in batch for the current window are not processed again.
      *
      * @param content             The content for which to process the property
+     * @param record              The CSV record containing the value
      * @param propertyName        Name of property
      * @param propertyValueObject Value of property
      * @return Resulting value
      */
-    private Object processPropertyValueObject(Content content, String propertyName, Object propertyValueObject) {
+    private Object processPropertyValueObject(Content content, ImportRecord record, String propertyName,
+                                              Object propertyValueObject) {
         PropertyValueObjectProcessor propertyValueObjectProcessor = propertyValueObjectProcessors.get(propertyName);
         if (propertyValueObjectProcessor == null) {
             return propertyValueObject;
         }
+        Map<String, Object> processedValues = processedWindowValues.get(record);
+        if (processedValues != null && processedValues.containsKey(propertyName)) {
+            return processedValues.get(propertyName);
+        }
         return propertyValueObjectProcessor.process(content, propertyName, propertyValueObject);
     }
 
@@ -462,9 +1040,8 @@ public class CSVParserHelper {
      */
     private Struct handleStructSetting(Object value) {
       StructService structService = contentRepository.getConnection().getStructService();
-      Markup structMarkup = MarkupFactory.fromString((String)value);
-      Struct valueStruct = structService.fromMarkup(structMarkup);
-      return valueStruct;
+      return structCache.get((String) value, structString ->
+              structService.fromMarkup(MarkupFactory.fromString(structString)));
     }
 
     /**
@@ -480,7 +1057,8 @@ public class CSVParserHelper {
     }
 
     /**
-     * Converts an object into a String List.
+     * Converts an object into a String List. The string is scanned once: brackets are dropped, the elements are split
+     * at commas and trimmed, and empty elements are removed.
      *
      * @param value the Object to convert. The toString() method of this object should return a String in the form of
      *              "[example1,example2,example3]"
@@ -488,16 +1066,20 @@ public class CSVParserHelper {
      */
     public static List<String> convertObjectStringToStringList(Object value) {
         String stringValue = value.toString();
-        stringValue = stringValue.replaceAll("\\[", "");
-        stringValue = stringValue.replaceAll("\\]", "");
-        List<String> stringList = new ArrayList<>(Arrays.asList(stringValue.split(",")));
-        // trim spaces
         List<String> result = new ArrayList<>();
-        for (String s : stringList) {
-            result.add(s.trim());
+        StringBuilder element = new StringBuilder();
+        for (int i = 0; i <= stringValue.length(); i++) {
+            char c = i < stringValue.length() ? stringValue.charAt(i) : ',';
+            if (c == ',') {
+                String trimmed = element.toString().trim();
+                if (!trimmed.isEmpty()) {
+                    result.add(trimmed);
+                }
+                element.setLength(0);
+            } else if (c != '[' && c != ']') {
+                element.append(c);
+            }
         }
-        // Remove all empty elements
-        result.removeAll(Arrays.asList("", null, " "));
         return result;
     }
 
@@ -541,8 +1123,8 @@ public class CSVParserHelper {
             if (tagListForTargetProperty == null) {
                 tagListForTargetProperty = new HashSet<>();
             }
-            if (subjectTaxonomyRootFolder != null) {
-                Content taxonomy = contentHelper.establishTax(value, subjectTaxonomyRootFolder);
+            if (subjectTaxonomyRootFolder != null && subjectTaxonomyIndex != null) {
+                Content taxonomy = subjectTaxonomyIndex.lookup(value);
                 if (taxonomy != null) {
                     tagListForTargetProperty.add(taxonomy);
                     tagsMap.put(propertyName, tagListForTargetProperty);
@@ -561,13 +1143,14 @@ public class CSVParserHelper {
     }
 
     /**
-     * Handles a regular content property. Find's the property descriptor of the specified property (by name) and then
-     * handles how that property should be set from the specified property value object. If the property value object
-     * succeeds in being converted to the correct type of the found property (by name), it will add the property name
-     * and the converted property object to the specified map.
+     * Handles a regular content property. Handles how the property should be set from the specified property value
+     * object, based on the descriptor type resolved by the conversion plan. If the property value object succeeds in
+     * being converted to the correct type of the property, it will add the property name and the converted property
+     * object to the specified map.
      *
      * @param content             the content to which to set the property
      * @param propertyName        the name of the property to set
+     * @param type                the descriptor type of the property, or null if the content has no such property
      * @param propertyValueObject the value of the property to set
      * @param objectProperties    the mapping of properties that will be used to update the content
      * @return true if it succeeds to find the property, convert the object correctly to the expected type, and add it
@@ -575,9 +1158,9 @@ public class CSVParserHelper {
      * @throws ParseException               if an exception occurs when parsing a date property
      * @throws UnsupportedEncodingException if an exception occurs while parsing a Markup/rich text property
      */
-    private boolean handleRegularProperty(Content content, String propertyName, Object propertyValueObject,
-                                          Map<String, Object> objectProperties) throws ParseException,
-            UnsupportedEncodingException {
+    private boolean handleRegularProperty(Content content, String propertyName, CapPropertyDescriptorType type,
+                                          Object propertyValueObject, Map<String, Object> objectProperties)
+            throws ParseException, UnsupportedEncodingException {
         boolean success = true;
         Object existingProperty = content.get(propertyName);
 
@@ -587,9 +1170,12 @@ public class CSVParserHelper {
         // null values for properties that do not exist and any properties set in the content to null by
         // default must be set
         if (existingProperty != null || !propertyValueObject.toString().isEmpty()) {
-            CapPropertyDescriptor propertyDescriptor = content.getType().getDescriptor(propertyName);
-            if (propertyDescriptor != null) {
-                CapPropertyDescriptorType type = propertyDescriptor.getType();
+            if ((type == CapPropertyDescriptorType.MARKUP || type == CapPropertyDescriptorType.STRUCT) &&
+                    propertyValueObject.toString().equals(ParsedValueCache.serialize(existingProperty))) {
+                // the value is unchanged since its export, there is no need to parse it
+                return success;
+            }
+            if (type != null) {
                 switch (type) {
                     case MARKUP:
                         propertyValueObject = handleRichText(propertyValueObject);
@@ -668,17 +1254,19 @@ public class CSVParserHelper {
                     stringBuilder.append("</div>");
                     encodedValue = stringBuilder.toString();
                 }
-                markup = MarkupFactory.fromString(encodedValue).withGrammar("coremedia-richtext-1.0");
+                markup = markupCache.get(encodedValue, markupString ->
+                        MarkupFactory.fromString(markupString).withGrammar("coremedia-richtext-1.0"));
             }
         }
         return markup;
     }
 
     /**
-     * Handles converting a property object into list of contents.
+     * Handles converting a property object into list of contents. The contents are taken from the contents prefetched
+     * for the current window, only links which have not been prefetched are looked up one by one.
      *
      * @param value the id of the content for which to fetch in the content repository
-     * @return the list with the specified link content. Returns null if no content is found.
+     * @return the list with the specified link content. Returns null if a linked content does not exist.
      */
     private Object handleLink(Object value) {
         List<Content> linkContent = new ArrayList<Content>();
@@ -686,8 +1274,20 @@ public class CSVParserHelper {
             List<String> links = convertObjectStringToStringList(value);
             for (String valueString : links) {
                 if (StringUtils.isNumeric(valueString)) {
-                    int contentId = IdHelper.parseContentId(valueString);
-                    linkContent.add(contentRepository.getContent(Integer.toString(contentId)));
+                    String contentId = Integer.toString(IdHelper.parseContentId(valueString));
+                    if (windowMissingContentIds.contains(contentId)) {
+                        logger.warn("Linked content does not exist: " + contentId);
+                        return null;
+                    }
+                    Content content = windowContents.get(contentId);
+                    if (content == null) {
+                        content = contentRepository.getContent(contentId);
+                    }
+                    if (content == null) {
+                        logger.warn("Linked content does not exist: " + contentId);
+                        return null;
+                    }
+                    linkContent.add(content);
                 }
                 else {
                     logger.warn(String.format("Link is not a valid id: " + valueString));
@@ -699,40 +1299,53 @@ public class CSVParserHelper {
     }
 
     /**
-     * Handles setting a property on the main picture of the content.
+     * Handles a property of the main picture of the content. The value is processed and converted like a property of
+     * the content itself: by the processor of the picture property, if any, as taxonomies or according to the
+     * conversion plan of the picture's type. The converted value is added to the picture properties of the record,
+     * which are written to the picture at once by {@link #queuePictureProperties}.
      *
-     * @param content      The content which will have its main picture updated
-     * @param propertyName the name of the property of the picture. Should be in the form "pictures.PICTURE_PROPERTY"
-     * @param value        the value of the picture property
+     * @param content           The content which will have its main picture updated
+     * @param index             the index of the property in the column plan
+     * @param propertyName      the name of the property of the picture. Should be in the form
+     *                          "pictures.PICTURE_PROPERTY"
+     * @param value             the value of the picture property
+     * @param columnPlan        the mapping of the CSV columns to content properties
+     * @param pictureProperties the mapping of picture properties of the record, which is to be populated
      */
-    private boolean handlePicture(Content content, String propertyName, Object value) {
+    private boolean handlePicture(Content content, int index, String propertyName, Object value,
+                                  ImportColumnPlan columnPlan, Map<String, Object> pictureProperties) {
         boolean success = true;
         List<Content> pictures = (List<Content>) content.get(PROPERTY_PICTURES);
 
         if (pictures != null) {
             if (!pictures.isEmpty()) {
-                logger.info(String.format("Retrieving the picture of content with Id %s.", content.getId()));
-                propertyName = propertyName.substring(propertyName.indexOf(".") + 1);
+                String pictureProperty = ContentTypeConversionPlan.getPicturePropertyName(propertyName);
                 Content mainPicture = pictures.get(0);
                 if (mainPicture != null) {
 
-                    // In the same fashion, we can call the same conversion and setting subroutines that we are using
-                    // for the parent content on the picture.
-                    Map<String, String> pictureStringProperties = new HashMap<>();
-                    pictureStringProperties.put(propertyName, value.toString());
-                    Map<String, Object> pictureProperties = new HashMap<>();
-                    Map<String, Set<Content>> pictureTagsMap = new HashMap<>();
-                    logger.info(String.format("Setting property %s on the main picture (id: %s) of content (id: %s)",
-                            propertyName, mainPicture.getId(), content.getId()));
-                    success = convertStringProperties(mainPicture, pictureStringProperties, pictureProperties,
-                            pictureTagsMap);
-                    if (success) {
-                        success = setObjectPropertiesInContent(mainPicture, pictureProperties);
-                        if (!success) {
-                            logger.error(String.format("An error occurred setting properties on picture content with" +
-                                            " id %s.",
-                                    content.getId()));
+                    // In the same fashion, we can call the same conversion subroutines that we are using for the
+                    // parent content on the picture.
+                    logger.debug("Converting property {} for the main picture (id: {}) of content (id: {})",
+                            pictureProperty, mainPicture.getId(), content.getId());
+                    try {
+                        // a processor of the picture column itself has already been applied
+                        PropertyValueObjectProcessor processor = propertyValueObjectProcessors.get(pictureProperty);
+                        if (processor != null && !propertyValueObjectProcessors.containsKey(propertyName)) {
+                            value = processor.process(mainPicture, pictureProperty, value);
+                        }
+                        pictureProperty = ContentTypeConversionPlan.getTargetPropertyName(pictureProperty);
+                        if (pictureProperty.equals(PROPERTY_SUBJECT_TAGS)) {
+                            success = handlePictureTaxonomies(mainPicture, value, pictureProperties);
+                        } else {
+                            ContentTypeConversionPlan pictureConversionPlan =
+                                    columnPlan.getConversionPlan(mainPicture.getType());
+                            success = handleRegularProperty(mainPicture, pictureProperty,
+                                    pictureConversionPlan.getPropertyType(index), value, pictureProperties);
                         }
+                    } catch (Exception e) {
+                        logger.error("Unexpected Exception in document (id : " + mainPicture.getId() + ", property: " +
+                                pictureProperty + ")", e);
+                        success = false;
                     }
                 }
                 // Edge case: if the CSV has a value for a pictures property - but the content itself's picture has been
@@ -765,39 +1378,93 @@ public class CSVParserHelper {
     }
 
     /**
-     * Updates a content's properties to match a specified mapping of property names to values in the content.
+     * Converts the taxonomies of the main picture of a content. If they differ from the current taxonomies of the
+     * picture, they are added to the picture properties of the record.
+     *
+     * @param mainPicture       the main picture
+     * @param value             the paths of the taxonomies
+     * @param pictureProperties the mapping of picture properties of the record, which is to be populated
+     * @return True if all taxonomies exist. Else, false.
+     */
+    private boolean handlePictureTaxonomies(Content mainPicture, Object value, Map<String, Object> pictureProperties) {
+        Map<String, Set<Content>> pictureTagsMap = new HashMap<>();
+        if (!handleTaxonomies(PROPERTY_SUBJECT_TAGS, pictureTagsMap, value)) {
+            return false;
+        }
+        List<Content> subjectTaxonomies = contentHelper.flattenTagsMap(pictureTagsMap);
+        List<Content> existingSubjectTaxonomies = (List<Content>) mainPicture.get(PROPERTY_SUBJECT_TAGS);
+        if (existingSubjectTaxonomies == null) {
+            logger.warn("Subject Taxonomies do not exist for Content with Id {}",
+                    IdHelper.parseContentId(mainPicture.getId()));
+        } else if (!listEqualsIgnoreOrder(subjectTaxonomies, existingSubjectTaxonomies)) {
+            pictureProperties.put(PROPERTY_SUBJECT_TAGS, subjectTaxonomies);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the main picture of a content.
+     *
+     * @param content the content
+     * @return the first picture of the content, or null if it has none
+     */
+    private static Content getMainPicture(Content content) {
+        List<Content> pictures = (List<Content>) content.get(PROPERTY_PICTURES);
+        return pictures != null && !pictures.isEmpty() ? pictures.get(0) : null;
+    }
+
+    /**
+     * Queues the picture properties of a record as one update of the main picture. Pictures shared by several contents
+     * of the same window are written once, with the merged properties of all their records. If records set different
+     * values for the same property of a shared picture, the last record wins, which is logged.
+     *
+     * @param content           the content the picture belongs to
+     * @param mainPicture       the main picture of the content
+     * @param pictureProperties the converted picture properties of the record
+     * @return True if the update was queued. Else, false.
+     */
+    private boolean queuePictureProperties(Content content, Content mainPicture,
+                                           Map<String, Object> pictureProperties) {
+        logger.info(String.format("Setting properties %s on the main picture (id: %s) of content (id: %s)",
+                pictureProperties.keySet(), mainPicture.getId(), content.getId()));
+        synchronized (transitionLocks.getLock(mainPicture.getId())) {
+            Map<String, Object> pending = pendingWrites.get(mainPicture);
+            if (pending != null) {
+                for (Map.Entry<String, Object> entry : pictureProperties.entrySet()) {
+                    if (pending.containsKey(entry.getKey()) &&
+                            !Objects.equals(pending.get(entry.getKey()), entry.getValue())) {
+                        logger.warn(String.format("The shared picture %s gets different values for property %s, " +
+                                "the value of content %s is used.", mainPicture.getId(), entry.getKey(),
+                                content.getId()));
+                    }
+                }
+            }
+        }
+        boolean success = setObjectPropertiesInContent(mainPicture, pictureProperties);
+        if (!success) {
+            logger.error(String.format("An error occurred setting properties on picture content with id %s.",
+                    content.getId()));
+        }
+        return success;
+    }
+
+    /**
+     * Queues an update of a content's properties to match a specified mapping of property names to values in the
+     * content. Queued updates are written in repository batches by {@link #flushPendingWrites()}. Several updates of
+     * the same content are merged into one write.
      *
      * @param content          the content for which to update properties
      * @param objectProperties the mapping of property name to the new values to which to update the specified content
-     * @return True if all properties were updated properly. Else, false.
+     * @return True if the update was queued. Else, false.
      */
     protected boolean setObjectPropertiesInContent(Content content, Map<String, Object> objectProperties) {
         boolean success = true;
         // only write if we have properties to write
         if (objectProperties.size() > 0) {
             try {
-                String contentPath = content.getPath();
-                synchronized (contentHelper.getTransitionLock(contentPath + "_" + content.getId(),
-                        transitionLockByPath)) {
-                    contentHelper.importContent(content, objectProperties, importedContents);
-                    logger.info("Successfully written document.");
+                synchronized (transitionLocks.getLock(content.getId())) {
+                    pendingWrites.computeIfAbsent(content, c -> new HashMap<>()).putAll(objectProperties);
                 }
-
-            } catch (CheckedOutByOtherException ex) {
-                logger.error("ContentCheckedOutByOtherException (id: " + content.getId() + ")", ex.getMessage());
-                success = false;
-            } catch (ContentException ce) {
-                logger.error("ContentException (id: " + content.getId() + ")", ce);
-                success = false;
-            } catch (InvalidNameException ine) {
-                logger.error("InvalidNameException (id: " + content.getId() + ")", ine);
-                success = false;
-            } catch (DuplicateNameException dne) {
-                logger.error("DuplicateNameException (id: " + content.getId() + ")", dne);
-                success = false;
-            } catch (NoSuchTypeException nse) {
-                logger.error("NoSuchTypeException (id: " + content.getId() + ")", nse);
-                success = false;
             } catch (Exception e) {
                 logger.error("Unexpected Exception (id: " + content.getId() + ")", e);
                 success = false;
@@ -809,17 +1476,251 @@ public class CSVParserHelper {
         return success;
     }
 
+    /**
+     * Writes all queued content updates. Checkout, property write and checkin of the contents are sent to the content
+     * server in repository batches. Contents which could not be updated are reported individually.
+     *
+     * @return the contents which have been written successfully
+     */
+    private Collection<Content> flushPendingWrites() {
+        Map<Content, Map<String, Object>> writes;
+        synchronized (pendingWrites) {
+            if (pendingWrites.isEmpty()) {
+                return Collections.emptyList();
+            }
+            writes = new LinkedHashMap<>(pendingWrites);
+            pendingWrites.clear();
+        }
+        long start = System.nanoTime();
+        Map<Content, Exception> failures = contentHelper.importContents(writes, importedContents);
+        writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        for (Map.Entry<Content, Exception> failure : failures.entrySet()) {
+            logWriteFailure(failure.getKey(), failure.getValue());
+        }
+        logger.info("Successfully written " + (writes.size() - failures.size()) + " of " + writes.size() +
+                " documents.");
+
+        for (Map.Entry<ImportRecord, List<Content>> pending : pendingRecordContents.entrySet()) {
+            Content content = pending.getValue().get(0);
+            String contentId = Integer.toString(IdHelper.parseContentId(content.getId()));
+            // the record failed if its content or its main picture could not be written
+            Exception failure = null;
+            for (Content recordContent : pending.getValue()) {
+                failure = failures.get(recordContent);
+                if (failure != null) {
+                    break;
+                }
+            }
+            if (failure == null) {
+                if (firstContent == null) {
+                    firstContent = content;
+                }
+                contentImported++;
+                reportRecord(pending.getKey(), contentId, ImportProgressListener.Outcome.WRITTEN, null);
+            } else {
+                reportRecord(pending.getKey(), contentId, ImportProgressListener.Outcome.FAILED,
+                        failure.getMessage());
+            }
+        }
+        pendingRecordContents.clear();
+
+        List<Content> writtenContents = new ArrayList<>(writes.keySet());
+        writtenContents.removeAll(failures.keySet());
+        return writtenContents;
+    }
+
+    /**
+     * Logs the failure to write a content.
+     *
+     * @param content the content which could not be written
+     * @param e       the cause of the failure
+     */
+    private void logWriteFailure(Content content, Exception e) {
+        if (e instanceof CheckedOutByOtherException) {
+            logger.error("ContentCheckedOutByOtherException (id: " + content.getId() + ")", e.getMessage());
+        } else if (e instanceof ContentException) {
+            logger.error("ContentException (id: " + content.getId() + ")", e);
+        } else if (e instanceof InvalidNameException) {
+            logger.error("InvalidNameException (id: " + content.getId() + ")", e);
+        } else if (e instanceof DuplicateNameException) {
+            logger.error("DuplicateNameException (id: " + content.getId() + ")", e);
+        } else if (e instanceof NoSuchTypeException) {
+            logger.error("NoSuchTypeException (id: " + content.getId() + ")", e);
+        } else {
+            logger.error("Unexpected Exception (id: " + content.getId() + ")", e);
+        }
+    }
+
     /**
      * Performs the final import of all remaining content and logging for the CSV Importer.
      */
     private void performFinalImport() {
-        // approve/publish the remaining documents
-        contentHelper.applyPreviousState(importedContents);
+        // approve/publish the remaining documents and, unless the pipeline is shared, wait for the publication of all
+        // previous batches
+        publicationPipeline.submit(importedContents, contentHelper, journal);
+        if (sharedPublicationPipeline == null) {
+            publicationPipeline.drain();
+        }
         logger.info("Documents written: " + contentImported);
+        logger.info("Documents skipped as unchanged: " + contentSkipped);
+        logger.debug("Rich text values parsed: {}, reused: {}. Struct values parsed: {}, reused: {}.",
+                markupCache.getMisses(), markupCache.getHits(), structCache.getMisses(), structCache.getHits());
         logger.info("WritingHandler: executing finished.");
     }
 
+    /**
+     * Closes the subject taxonomy index, if it has been built.
+     */
+    private void closeTaxonomyIndex() {
+        if (subjectTaxonomyIndex != null) {
+            subjectTaxonomyIndex.close();
+            subjectTaxonomyIndex = null;
+        }
+    }
+
+    /**
+     * Sets the journal in which the progress of the import is recorded. If the journal has been loaded from a previous
+     * run, all records up to its last committed record are skipped, and the contents it lists as unpublished are
+     * approved/published.
+     *
+     * @param journal the journal, may be null
+     */
+    public void setJournal(ImportJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Sets the throttle which limits the pace of the import and measures its current rate.
+     *
+     * @param throttle the throttle, may be null
+     */
+    public void setThrottle(ImportThrottle throttle) {
+        this.throttle = throttle;
+    }
+
+    /**
+     * Sets a publication pipeline which is shared with the imports of other CSV files. The pipeline is not drained
+     * when the import is finished, this is up to its owner.
+     *
+     * @param sharedPublicationPipeline the pipeline, or null to use a pipeline of this import
+     */
+    public void setSharedPublicationPipeline(PublicationPipeline sharedPublicationPipeline) {
+        this.sharedPublicationPipeline = sharedPublicationPipeline;
+    }
+
+    /**
+     * Sets the registry in which the import records its metrics: the records parsed and their outcomes, the latency of
+     * the content writes, and the documents published and the latency of their publication. By default, the metrics
+     * are recorded in the global registry of Micrometer, which discards them unless a registry has been added to it.
+     *
+     * @param meterRegistry the registry
+     */
+    public void setMeterRegistry(@NonNull MeterRegistry meterRegistry) {
+        recordsParsedCounter = meterRegistry.counter(METRIC_RECORDS_PARSED);
+        for (ImportProgressListener.Outcome outcome : ImportProgressListener.Outcome.values()) {
+            recordCounters.put(outcome, meterRegistry.counter(METRIC_RECORDS, "outcome",
+                    outcome.name().toLowerCase(Locale.ROOT)));
+        }
+        writeTimer = meterRegistry.timer(METRIC_WRITE);
+        contentHelper.setMeterRegistry(meterRegistry);
+    }
+
+    /**
+     * Sets the shard of the records to import. Records of other shards are skipped without being reported.
+     *
+     * @param shard the shard, or null to import all records
+     */
+    public void setShard(ImportShard shard) {
+        this.shard = shard;
+    }
+
+    /**
+     * Sets the listener which is notified of the outcome of each record.
+     *
+     * @param progressListener the listener, may be null
+     */
+    public void setProgressListener(ImportProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Sets the property value object processors, replacing the default processors.
+     *
+     * @param propertyValueObjectProcessors the processors, by the name of the property they process
+     */
+    public void setPropertyValueObjectProcessors(Map<String, PropertyValueObjectProcessor>
+                                                         propertyValueObjectProcessors) {
+        this.propertyValueObjectProcessors.clear();
+        this.propertyValueObjectProcessors.putAll(propertyValueObjectProcessors);
+    }
+
+    /**
+     * Gets the number of documents written by the import.
+     *
+     * @return the number of documents
+     */
+    public int getContentImported() {
+        return contentImported;
+    }
+
+    /**
+     * Gets the number of records skipped because they are unchanged since their export.
+     *
+     * @return the number of records
+     */
+    public int getContentSkipped() {
+        return contentSkipped;
+    }
+
+    /**
+     * Gets the number of records which could not be imported.
+     *
+     * @return the number of records
+     */
+    public int getContentFailed() {
+        return contentFailed;
+    }
+
     public Content getFirstContent() {
       return firstContent;
     }
+
+    /**
+     * Sets the number of CSV records that are read ahead and whose contents are prefetched in one batch.
+     *
+     * @param readAheadWindowSize the read-ahead window size, must be positive
+     */
+    public void setReadAheadWindowSize(int readAheadWindowSize) {
+        if (readAheadWindowSize < 1) {
+            throw new IllegalArgumentException("readAheadWindowSize must be positive, but was " + readAheadWindowSize);
+        }
+        this.readAheadWindowSize = readAheadWindowSize;
+    }
+
+    /**
+     * Sets the number of documents that must be imported before they are submitted for publication.
+     *
+     * @param publicationBatchSize the publication batch size, must be positive
+     */
+    public void setPublicationBatchSize(int publicationBatchSize) {
+        if (publicationBatchSize < 1) {
+            throw new IllegalArgumentException("publicationBatchSize must be positive, but was " +
+                    publicationBatchSize);
+        }
+        this.publicationBatchSize = publicationBatchSize;
+    }
+
+    /**
+     * Sets the maximum time that imported documents wait for publication, even if the publication batch size has not
+     * been reached.
+     *
+     * @param publicationFlushInterval the flush interval in milliseconds, zero disables the time based publication
+     */
+    public void setPublicationFlushInterval(long publicationFlushInterval) {
+        if (publicationFlushInterval < 0) {
+            throw new IllegalArgumentException("publicationFlushInterval must not be negative, but was " +
+                    publicationFlushInterval);
+        }
+        this.publicationFlushInterval = publicationFlushInterval;
+    }
 }
@@ -0,0 +1,361 @@
+package com.coremedia.csv.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits CSV text in the EXCEL format into records which materialize their values lazily. The text is read into large
+ * char buffers, and each record keeps the offsets of its values in the buffer it has been read from. Strings are only
+ * created for values which are actually read, see {@link ImportRecord#get(int)}.
+ * <p>
+ * The format follows RFC 4180 as implemented by {@code CSVFormat.EXCEL} of commons-csv: values are separated by
+ * commas, records by CRLF, LF or CR. Values which start with a quote are quoted: they may contain commas, line breaks
+ * and doubled quotes, and must be followed by a comma or the end of the record. Whitespace between the closing quote
+ * and the comma or the end of the record is skipped. Quotes within unquoted values are
+ * kept as they are. Empty lines are records with one empty value, and values are not trimmed.
+ * <p>
+ * Buffers are never reused, so records stay valid after the tokenizer has moved on. A buffer is released once no
+ * record refers to it any longer. A record which does not fit into the rest of a buffer is copied into the next one.
+ */
+public class CSVTokenizer implements Iterable<ImportRecord>, Closeable {
+
+    /**
+     * The default size of the buffers in characters.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    private static final char DELIMITER = ',';
+    private static final char QUOTE = '"';
+
+    /**
+     * Result of {@link #tokenize()} if the record is not completely contained in the buffer.
+     */
+    private static final int INCOMPLETE = -1;
+
+    /**
+     * Result of {@link #tokenize()} if there are no more records.
+     */
+    private static final int END = -2;
+
+    /**
+     * The reader of the text, null if the text is given as a buffer.
+     */
+    private final Reader reader;
+    private final int bufferSize;
+
+    private char[] buffer;
+    private int position;
+    private int limit;
+    private boolean endOfInput;
+
+    /**
+     * The offset of the last tokenized record in the buffer.
+     */
+    private int recordStart;
+
+    /**
+     * The number of characters before the start of the buffer.
+     */
+    private long bufferCharacterOffset;
+    private long nextRecordNumber;
+
+    /**
+     * The start, end and escaping of each value of the record being tokenized.
+     */
+    private int[] fields = new int[3 * 16];
+
+    /**
+     * Creates a tokenizer which reads the text from a reader.
+     *
+     * @param reader            the reader of the text, positioned at the start of a record
+     * @param bufferSize        the size of the buffers in characters, buffers are larger if a record does not fit
+     * @param characterOffset   the position of the first character of the reader in the CSV file
+     * @param firstRecordNumber the number of the first record
+     */
+    public CSVTokenizer(Reader reader, int bufferSize, long characterOffset, long firstRecordNumber) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive, but was " + bufferSize);
+        }
+        this.reader = reader;
+        this.bufferSize = bufferSize;
+        this.buffer = new char[0];
+        this.bufferCharacterOffset = characterOffset;
+        this.nextRecordNumber = firstRecordNumber;
+    }
+
+    /**
+     * Creates a tokenizer of text which has already been read into a buffer. The records refer to the given buffer,
+     * which must not be modified while they are in use.
+     *
+     * @param chars             the buffer
+     * @param offset            the offset of the text in the buffer, at the start of a record
+     * @param length            the length of the text
+     * @param characterOffset   the position of the first character of the text in the CSV file
+     * @param firstRecordNumber the number of the first record
+     */
+    public CSVTokenizer(char[] chars, int offset, int length, long characterOffset, long firstRecordNumber) {
+        this.reader = null;
+        this.bufferSize = length;
+        this.buffer = chars;
+        this.position = offset;
+        this.limit = offset + length;
+        this.endOfInput = true;
+        this.bufferCharacterOffset = characterOffset - offset;
+        this.nextRecordNumber = firstRecordNumber;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the record, or null if there are no more records
+     * @throws IOException if the text cannot be read or is not valid CSV
+     */
+    public ImportRecord next() throws IOException {
+        int fieldCount;
+        while ((fieldCount = tokenize()) == INCOMPLETE) {
+            fill();
+        }
+        if (fieldCount == END) {
+            return null;
+        }
+        return new TokenizedRecord(buffer, Arrays.copyOf(fields, 3 * fieldCount), nextRecordNumber++,
+                bufferCharacterOffset + recordStart);
+    }
+
+    /**
+     * Tokenizes the record at the current position. The position is only moved if the record is complete.
+     *
+     * @return the number of values of the record, {@link #INCOMPLETE} or {@link #END}
+     */
+    private int tokenize() throws IOException {
+        int i = position;
+        if (i == limit) {
+            return endOfInput ? END : INCOMPLETE;
+        }
+        int fieldCount = 0;
+        while (true) {
+            int start;
+            int end;
+            int escaped = 0;
+            if (i < limit && buffer[i] == QUOTE) {
+                start = ++i;
+                while (true) {
+                    if (i == limit) {
+                        if (endOfInput) {
+                            throw new IOException("The quoted value of record " + nextRecordNumber +
+                                    " is not closed before the end of the file.");
+                        }
+                        return INCOMPLETE;
+                    }
+                    if (buffer[i] == QUOTE) {
+                        if (i + 1 == limit && !endOfInput) {
+                            return INCOMPLETE;
+                        }
+                        if (i + 1 < limit && buffer[i + 1] == QUOTE) {
+                            escaped = 1;
+                            i += 2;
+                            continue;
+                        }
+                        end = i++;
+                        break;
+                    }
+                    i++;
+                }
+                while (i < limit && isWhitespace(buffer[i])) {
+                    i++;
+                }
+                if (i == limit && !endOfInput) {
+                    return INCOMPLETE;
+                }
+                if (i < limit && buffer[i] != DELIMITER && buffer[i] != '\r' && buffer[i] != '\n') {
+                    throw new IOException("Invalid character after the quoted value " + (fieldCount + 1) +
+                            " of record " + nextRecordNumber + ".");
+                }
+            } else {
+                start = i;
+                while (i < limit && buffer[i] != DELIMITER && buffer[i] != '\r' && buffer[i] != '\n') {
+                    i++;
+                }
+                if (i == limit && !endOfInput) {
+                    return INCOMPLETE;
+                }
+                end = i;
+            }
+            if (3 * fieldCount + 3 > fields.length) {
+                fields = Arrays.copyOf(fields, 2 * fields.length);
+            }
+            fields[3 * fieldCount] = start;
+            fields[3 * fieldCount + 1] = end;
+            fields[3 * fieldCount + 2] = escaped;
+            fieldCount++;
+
+            if (i == limit) {
+                // the last record of the text has no line break
+                break;
+            }
+            char c = buffer[i];
+            if (c == DELIMITER) {
+                i++;
+                continue;
+            }
+            if (c == '\r') {
+                if (i + 1 == limit && !endOfInput) {
+                    return INCOMPLETE;
+                }
+                i += (i + 1 < limit && buffer[i + 1] == '\n') ? 2 : 1;
+            } else {
+                i++;
+            }
+            break;
+        }
+        recordStart = position;
+        position = i;
+        return fieldCount;
+    }
+
+    /**
+     * Checks whether a character may follow the closing quote of a value, before the comma or the end of the record.
+     */
+    private static boolean isWhitespace(char c) {
+        return c != DELIMITER && c != '\r' && c != '\n' && Character.isWhitespace(c);
+    }
+
+    /**
+     * Reads the next buffer. The incomplete record at the end of the current buffer is copied to its start.
+     */
+    private void fill() throws IOException {
+        int remaining = limit - position;
+        // a record which does not fit into a buffer gets a larger one
+        char[] next = new char[Math.max(bufferSize, 2 * remaining)];
+        System.arraycopy(buffer, position, next, 0, remaining);
+        bufferCharacterOffset += position;
+        buffer = next;
+        position = 0;
+        limit = remaining;
+        while (limit < buffer.length) {
+            int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                endOfInput = true;
+                break;
+            }
+            limit += read;
+        }
+    }
+
+    /**
+     * Returns an iterator over the remaining records. If the text cannot be read, the iterator throws an
+     * {@link IllegalStateException}.
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<ImportRecord> iterator() {
+        return new Iterator<ImportRecord>() {
+            private ImportRecord next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = CSVTokenizer.this.next();
+                    } catch (IOException e) {
+                        throw new IllegalStateException("Could not read the CSV text: " + e.getMessage(), e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public ImportRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ImportRecord record = next;
+                next = null;
+                return record;
+            }
+        };
+    }
+
+    /**
+     * Closes the reader, if any.
+     */
+    @Override
+    public void close() throws IOException {
+        if (reader != null) {
+            reader.close();
+        }
+    }
+
+    /**
+     * A record whose values are read from the buffer it has been tokenized in.
+     */
+    private static final class TokenizedRecord implements ImportRecord {
+        private final char[] buffer;
+        private final int[] fields;
+        private final long recordNumber;
+        private final long characterPosition;
+
+        /**
+         * The values which have been read so far, created on first use.
+         */
+        private String[] values;
+
+        TokenizedRecord(char[] buffer, int[] fields, long recordNumber, long characterPosition) {
+            this.buffer = buffer;
+            this.fields = fields;
+            this.recordNumber = recordNumber;
+            this.characterPosition = characterPosition;
+        }
+
+        @Override
+        public long getRecordNumber() {
+            return recordNumber;
+        }
+
+        @Override
+        public long getCharacterPosition() {
+            return characterPosition;
+        }
+
+        @Override
+        public int size() {
+            return fields.length / 3;
+        }
+
+        @Override
+        public String get(int column) {
+            if (values == null) {
+                values = new String[size()];
+            }
+            String value = values[column];
+            if (value == null) {
+                int start = fields[3 * column];
+                int end = fields[3 * column + 1];
+                value = fields[3 * column + 2] == 0 ? new String(buffer, start, end - start)
+                        : unescape(start, end);
+                values[column] = value;
+            }
+            return value;
+        }
+
+        /**
+         * Creates the value of a quoted value with doubled quotes.
+         */
+        private String unescape(int start, int end) {
+            StringBuilder value = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                value.append(buffer[i]);
+                if (buffer[i] == QUOTE) {
+                    // skip the second quote
+                    i++;
+                }
+            }
+            return value.toString();
+        }
+    }
+}
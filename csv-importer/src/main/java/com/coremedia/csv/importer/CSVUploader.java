@@ -1,12 +1,14 @@
 package com.coremedia.csv.importer;
 
 import com.coremedia.cap.Cap;
+import com.coremedia.cap.common.CapSession;
 import com.coremedia.cap.content.ContentRepository;
 import com.coremedia.cap.user.Group;
 import com.coremedia.cap.user.User;
 import com.coremedia.cap.user.UserRepository;
 import com.coremedia.cmdline.AbstractSpringAwareUAPIClient;
 import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 import org.apache.commons.csv.CSVFormat;
@@ -17,9 +19,24 @@ import org.springframework.beans.factory.annotation.Required;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 import java.io.*;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This client moves content located in one directory into another
@@ -40,7 +57,8 @@ public class CSVUploader extends AbstractSpringAwareUAPIClient {
      * User description of the source directory parameter.
      */
     private static final String SOURCE_CSV_DESCRIPTION = "The path to the CSV file that which contains the content " +
-            "to be uploaded/updated";
+            "to be uploaded/updated. May also be a folder, whose CSV files are all imported, or a path whose file " +
+            "name is a pattern, e.g. exports/*-nightly.csv";
 
     /**
      * Short version of the command line argument that specifies if the updated content should be automatically published if the prior version was published.
@@ -58,38 +76,354 @@ public class CSVUploader extends AbstractSpringAwareUAPIClient {
     private static final String AUTO_PUBLISH_DESCRIPTION = "Use/specify if updated content should be automatically published if the prior version was published.";
 
     /**
-     * Error message when the source CSV file does not exist or is a folder.
+     * Short version of the command line argument that specifies the number of documents published together.
      */
-    private static final String SOURCE_CSV_ERROR_DNE = "ERROR: The specified CSV file is a folder or does not" +
+    private static final String PUBLISH_BATCH_SIZE_PARAMETER_SHORT = "pb";
+
+    /**
+     * Long version of the command line argument that specifies the number of documents published together.
+     */
+    private static final String PUBLISH_BATCH_SIZE_PARAMETER_LONG = "publishbatchsize";
+
+    /**
+     * User description of the publish batch size parameter.
+     */
+    private static final String PUBLISH_BATCH_SIZE_DESCRIPTION = "The number of updated documents that are " +
+            "approved/published together (default: " + CSVParserHelper.DEFAULT_PUBLICATION_BATCH_SIZE + ").";
+
+    /**
+     * Short version of the command line argument that specifies the maximum time documents wait for publication.
+     */
+    private static final String PUBLISH_INTERVAL_PARAMETER_SHORT = "pi";
+
+    /**
+     * Long version of the command line argument that specifies the maximum time documents wait for publication.
+     */
+    private static final String PUBLISH_INTERVAL_PARAMETER_LONG = "publishinterval";
+
+    /**
+     * User description of the publish interval parameter.
+     */
+    private static final String PUBLISH_INTERVAL_DESCRIPTION = "The maximum number of seconds updated documents " +
+            "wait for approval/publication, even if the publish batch size has not been reached (default: no limit).";
+
+    /**
+     * Short version of the command line argument that specifies if an interrupted import should be resumed.
+     */
+    private static final String RESUME_PARAMETER_SHORT = "r";
+
+    /**
+     * Long version of the command line argument that specifies if an interrupted import should be resumed.
+     */
+    private static final String RESUME_PARAMETER_LONG = "resume";
+
+    /**
+     * User description of the resume parameter.
+     */
+    private static final String RESUME_DESCRIPTION = "Use/specify to resume an interrupted import of the source CSV " +
+            "file after the last record recorded in its journal.";
+
+    /**
+     * Short version of the command line argument that specifies the journal file.
+     */
+    private static final String JOURNAL_PARAMETER_SHORT = "j";
+
+    /**
+     * Long version of the command line argument that specifies the journal file.
+     */
+    private static final String JOURNAL_PARAMETER_LONG = "journal";
+
+    /**
+     * User description of the journal parameter.
+     */
+    private static final String JOURNAL_DESCRIPTION = "The path to the file in which the progress of the import is " +
+            "recorded (default: the source CSV file with the suffix " + ImportJournal.FILE_SUFFIX + ").";
+
+    /**
+     * Short version of the command line argument that specifies the number of threads parsing the source CSV file.
+     */
+    private static final String PARSE_THREADS_PARAMETER_SHORT = "pt";
+
+    /**
+     * Long version of the command line argument that specifies the number of threads parsing the source CSV file.
+     */
+    private static final String PARSE_THREADS_PARAMETER_LONG = "parsethreads";
+
+    /**
+     * User description of the parse threads parameter.
+     */
+    private static final String PARSE_THREADS_DESCRIPTION = "The number of threads parsing the memory-mapped source " +
+            "CSV file in chunks (default: the file is parsed sequentially). The file must be encoded in UTF-8.";
+
+    /**
+     * Short version of the command line argument that specifies the maximum number of records imported per second.
+     */
+    private static final String MAX_RECORD_RATE_PARAMETER_SHORT = "mr";
+
+    /**
+     * Long version of the command line argument that specifies the maximum number of records imported per second.
+     */
+    private static final String MAX_RECORD_RATE_PARAMETER_LONG = "maxrecordrate";
+
+    /**
+     * User description of the max record rate parameter.
+     */
+    private static final String MAX_RECORD_RATE_DESCRIPTION = "The maximum number of CSV records imported per " +
+            "second (default: no limit).";
+
+    /**
+     * Short version of the command line argument that specifies the maximum number of documents written per second.
+     */
+    private static final String MAX_WRITE_RATE_PARAMETER_SHORT = "mw";
+
+    /**
+     * Long version of the command line argument that specifies the maximum number of documents written per second.
+     */
+    private static final String MAX_WRITE_RATE_PARAMETER_LONG = "maxwriterate";
+
+    /**
+     * User description of the max write rate parameter.
+     */
+    private static final String MAX_WRITE_RATE_DESCRIPTION = "The maximum number of documents written per second " +
+            "(default: no limit).";
+
+    /**
+     * Short version of the command line argument that specifies the target write latency.
+     */
+    private static final String TARGET_LATENCY_PARAMETER_SHORT = "tl";
+
+    /**
+     * Long version of the command line argument that specifies the target write latency.
+     */
+    private static final String TARGET_LATENCY_PARAMETER_LONG = "targetlatency";
+
+    /**
+     * User description of the target latency parameter.
+     */
+    private static final String TARGET_LATENCY_DESCRIPTION = "The target average number of milliseconds to write a " +
+            "document. If writing takes longer, the import backs off until the content server catches up (default: " +
+            "no backoff).";
+
+    /**
+     * Short version of the command line argument that specifies the shard of the records to import.
+     */
+    private static final String SHARD_PARAMETER_SHORT = "sh";
+
+    /**
+     * Long version of the command line argument that specifies the shard of the records to import.
+     */
+    private static final String SHARD_PARAMETER_LONG = "shard";
+
+    /**
+     * User description of the shard parameter.
+     */
+    private static final String SHARD_DESCRIPTION = "Imports only the records of one shard, given as <index>/<count>, " +
+            "e.g. 2/8. Records are assigned to shards by a hash of their content id. The shard has its own journal " +
+            "and writes the outcome of its records to a report next to the source CSV file.";
+
+    /**
+     * Short version of the command line argument that specifies the number of shard processes to launch.
+     */
+    private static final String SHARDS_PARAMETER_SHORT = "shs";
+
+    /**
+     * Long version of the command line argument that specifies the number of shard processes to launch.
+     */
+    private static final String SHARDS_PARAMETER_LONG = "shards";
+
+    /**
+     * Short version of the command line argument of the base client that specifies the password of the user.
+     */
+    private static final String PASSWORD_PARAMETER_SHORT = "p";
+
+    /**
+     * User description of the shards parameter.
+     */
+    private static final String SHARDS_DESCRIPTION = "Launches the given number of uploader processes, each " +
+            "importing one --" + SHARD_PARAMETER_LONG + " of the source CSV file with the same options, waits for " +
+            "them and merges their reports into one report. The output of each process is written to a log file " +
+            "next to the source CSV file. Requires the password to be given with -" + PASSWORD_PARAMETER_SHORT +
+            ", it is passed on to the processes in their environment.";
+
+    /**
+     * The environment variable in which the password is passed on to the shard processes, so that it does not show
+     * on their command lines.
+     */
+    private static final String SHARD_PASSWORD_ENVIRONMENT_VARIABLE = "CSV_UPLOADER_SHARD_PASSWORD";
+
+    /**
+     * Error message when shard processes are to be launched, but the password has not been given.
+     */
+    private static final String SHARDS_PASSWORD_ERROR = "ERROR: --" + SHARDS_PARAMETER_LONG + " requires the " +
+            "password to be given with -" + PASSWORD_PARAMETER_SHORT + ", the shard processes cannot prompt for it.";
+
+    /**
+     * Error message when the shard parameter is invalid.
+     */
+    private static final String INVALID_SHARD_ERROR = "ERROR: %s.";
+
+    /**
+     * Error message when both shard parameters are given.
+     */
+    private static final String SHARD_CONFLICT_ERROR = "ERROR: --" + SHARD_PARAMETER_LONG + " and --" +
+            SHARDS_PARAMETER_LONG + " cannot be combined.";
+
+    /**
+     * Error message when a numeric command line argument is invalid.
+     */
+    private static final String INVALID_NUMBER_ERROR = "ERROR: The value of --%s must be a positive number, but " +
+            "was: %s.";
+
+    /**
+     * Error message when the source CSV file does not exist.
+     */
+    private static final String SOURCE_CSV_ERROR_DNE = "ERROR: The specified CSV file or folder does not" +
             " exist.\nFile specified: %s.";
 
     /**
-     * Error message when the source CSV file is not a proper CSV file.
+     * Error message when the source folder or pattern does not match any CSV file.
+     */
+    private static final String SOURCE_CSV_ERROR_NO_FILES = "ERROR: No CSV files found.\nSource specified: %s.";
+
+    /**
+     * Error message when options which require a single source CSV file are used with several files.
+     */
+    private static final String SOURCE_CSV_ERROR_NOT_SINGLE = "ERROR: --%s requires a single source CSV file, but " +
+            "%d files were found.";
+
+    /**
+     * Short version of the command line argument that specifies the number of files imported at the same time.
+     */
+    private static final String FILE_THREADS_PARAMETER_SHORT = "ft";
+
+    /**
+     * Long version of the command line argument that specifies the number of files imported at the same time.
      */
-    private static final String SOURCE_CSV_ERROR_NOT_CSV = "ERROR: The specified file is not a CSV.\nFile " +
-            "specified: %s.";
+    private static final String FILE_THREADS_PARAMETER_LONG = "filethreads";
+
+    /**
+     * User description of the file threads parameter.
+     */
+    private static final String FILE_THREADS_DESCRIPTION = "The number of CSV files imported at the same time, if " +
+            "the source is a folder or a pattern (default: 1). All files share one session, publication pipeline " +
+            "and throttle.";
+
+    /**
+     * The characters which make the file name of the source a pattern.
+     */
+    private static final String GLOB_CHARACTERS = "*?[{";
 
   /**
    * Error message when the user is not authorized to perform the import.
    */
   private static final String USER_NOT_AUTHORIZED = "Cannot perform CSV Import. Unauthorized.";
 
+    /**
+     * Error message when the import journal cannot be read or written.
+     */
+    private static final String JOURNAL_ERROR = "ERROR: Cannot use the import journal %s.\nReason: %s";
+
+    /**
+     * Error message when the report of a shard cannot be written.
+     */
+    private static final String REPORT_ERROR = "ERROR: Cannot write the import report %s.\nReason: %s";
+
     /**
      * Error message when parsing the CSV file fails.
      */
     private static final String ERROR_PARSING_CSV = "ERROR: An error occurred while trying to parse the CSV file, %s." +
             "\nReason: %s";
 
+    /**
+     * The name of the optional bean which maps property names to their processors.
+     */
+    private static final String PROPERTY_VALUE_OBJECT_PROCESSORS_BEAN = "propertyValueObjectProcessors";
+
     /**
      * The source CSV file.
      */
     private String sourceCSV;
 
+    /**
+     * The CSV files the source resolves to.
+     */
+    private List<File> csvFiles;
+
     /**
      * If updated content should be automatically be published if prior version was published.
      */
     private boolean autoPublish;
 
+    /**
+     * The number of updated documents that are approved/published together.
+     */
+    private int publicationBatchSize = CSVParserHelper.DEFAULT_PUBLICATION_BATCH_SIZE;
+
+    /**
+     * The maximum time in milliseconds updated documents wait for approval/publication.
+     */
+    private long publicationFlushInterval = CSVParserHelper.DEFAULT_PUBLICATION_FLUSH_INTERVAL;
+
+    /**
+     * If an interrupted import should be resumed from its journal.
+     */
+    private boolean resume;
+
+    /**
+     * The path to the journal file, or null to use the default journal file of the source CSV file.
+     */
+    private String journalPath;
+
+    /**
+     * The number of threads parsing the source CSV file in chunks, 0 to parse it sequentially.
+     */
+    private int parseThreads;
+
+    /**
+     * The number of CSV files imported at the same time.
+     */
+    private int fileThreads = 1;
+
+    /**
+     * The maximum number of records imported per second, 0 for no limit.
+     */
+    private long maxRecordsPerSecond;
+
+    /**
+     * The maximum number of documents written per second, 0 for no limit.
+     */
+    private long maxWritesPerSecond;
+
+    /**
+     * The target average time in milliseconds to write a document, 0 to disable the adaptive backoff.
+     */
+    private long targetLatency;
+
+    /**
+     * The shard of the records to import, or null to import all records.
+     */
+    private ImportShard shard;
+
+    /**
+     * The number of shard processes to launch, 0 to import in this process.
+     */
+    private int shardCount;
+
+    /**
+     * The command line arguments passed on to the shard processes, without the password.
+     */
+    private final List<String> shardArguments = new ArrayList<>();
+
+    /**
+     * The password passed on to the shard processes in their environment.
+     */
+    private String shardPassword;
+
+    /**
+     * Whether the first record of the run has been read, see {@link #reportFirstRecord(Iterable)}.
+     */
+    private final AtomicBoolean firstRecordRead = new AtomicBoolean();
+
     /**
      * A relational map consisting of the names of the CSV headers and their corresponding content property names.
      */
@@ -140,6 +474,72 @@ public class CSVUploader extends AbstractSpringAwareUAPIClient {
                 .isRequired(false)
                 .hasArg(false)
                 .create(AUTO_PUBLISH_PARAMETER_SHORT));
+        options.addOption(OptionBuilder.hasArg()
+                .withDescription(PUBLISH_BATCH_SIZE_DESCRIPTION)
+                .withLongOpt(PUBLISH_BATCH_SIZE_PARAMETER_LONG)
+                .isRequired(false)
+                .hasArg(true)
+                .create(PUBLISH_BATCH_SIZE_PARAMETER_SHORT));
+        options.addOption(OptionBuilder.hasArg()
+                .withDescription(PUBLISH_INTERVAL_DESCRIPTION)
+                .withLongOpt(PUBLISH_INTERVAL_PARAMETER_LONG)
+                .isRequired(false)
+                .hasArg(true)
+                .create(PUBLISH_INTERVAL_PARAMETER_SHORT));
+        options.addOption(OptionBuilder.hasArg()
+                .withDescription(RESUME_DESCRIPTION)
+                .withLongOpt(RESUME_PARAMETER_LONG)
+                .isRequired(false)
+                .hasArg(false)
+                .create(RESUME_PARAMETER_SHORT));
+        options.addOption(OptionBuilder.hasArg()
+                .withDescription(JOURNAL_DESCRIPTION)
+                .withLongOpt(JOURNAL_PARAMETER_LONG)
+                .isRequired(false)
+                .hasArg(true)
+                .create(JOURNAL_PARAMETER_SHORT));
+        options.addOption(OptionBuilder.hasArg()
+                .withDescription(PARSE_THREADS_DESCRIPTION)
+                .withLongOpt(PARSE_THREADS_PARAMETER_LONG)
+                .isRequired(false)
+                .hasArg(true)
+                .create(PARSE_THREADS_PARAMETER_SHORT));
+        options.addOption(OptionBuilder.hasArg()
+                .withDescription(FILE_THREADS_DESCRIPTION)
+                .withLongOpt(FILE_THREADS_PARAMETER_LONG)
+                .isRequired(false)
+                .hasArg(true)
+                .create(FILE_THREADS_PARAMETER_SHORT));
+        options.addOption(OptionBuilder.hasArg()
+                .withDescription(MAX_RECORD_RATE_DESCRIPTION)
+                .withLongOpt(MAX_RECORD_RATE_PARAMETER_LONG)
+                .isRequired(false)
+                .hasArg(true)
+                .create(MAX_RECORD_RATE_PARAMETER_SHORT));
+        options.addOption(OptionBuilder.hasArg()
+                .withDescription(MAX_WRITE_RATE_DESCRIPTION)
+                .withLongOpt(MAX_WRITE_RATE_PARAMETER_LONG)
+                .isRequired(false)
+                .hasArg(true)
+                .create(MAX_WRITE_RATE_PARAMETER_SHORT));
+        options.addOption(OptionBuilder.hasArg()
+                .withDescription(TARGET_LATENCY_DESCRIPTION)
+                .withLongOpt(TARGET_LATENCY_PARAMETER_LONG)
+                .isRequired(false)
+                .hasArg(true)
+                .create(TARGET_LATENCY_PARAMETER_SHORT));
+        options.addOption(OptionBuilder.hasArg()
+                .withDescription(SHARD_DESCRIPTION)
+                .withLongOpt(SHARD_PARAMETER_LONG)
+                .isRequired(false)
+                .hasArg(true)
+                .create(SHARD_PARAMETER_SHORT));
+        options.addOption(OptionBuilder.hasArg()
+                .withDescription(SHARDS_DESCRIPTION)
+                .withLongOpt(SHARDS_PARAMETER_LONG)
+                .isRequired(false)
+                .hasArg(true)
+                .create(SHARDS_PARAMETER_SHORT));
     }
 
     /**
@@ -148,8 +548,15 @@ public class CSVUploader extends AbstractSpringAwareUAPIClient {
     @NonNull
     @Override
     protected String getUsage() {
-        return "cm csv-uploader -u <user> [other options] [--" + AUTO_PUBLISH_PARAMETER_LONG + "] --" + SOURCE_CSV_PARAMETER_LONG
-                + " <source CSV file>";
+        return "cm csv-uploader -u <user> [other options] [--" + AUTO_PUBLISH_PARAMETER_LONG + "] [--"
+                + PUBLISH_BATCH_SIZE_PARAMETER_LONG + " <documents>] [--" + PUBLISH_INTERVAL_PARAMETER_LONG
+                + " <seconds>] [--" + RESUME_PARAMETER_LONG + "] [--" + JOURNAL_PARAMETER_LONG + " <journal file>] [--"
+                + PARSE_THREADS_PARAMETER_LONG + " <threads>] [--" + FILE_THREADS_PARAMETER_LONG + " <files>] [--"
+                + MAX_RECORD_RATE_PARAMETER_LONG
+                + " <records/s>] [--" + MAX_WRITE_RATE_PARAMETER_LONG + " <documents/s>] [--"
+                + TARGET_LATENCY_PARAMETER_LONG + " <ms>] [--" + SHARD_PARAMETER_LONG + " <index>/<count> | --"
+                + SHARDS_PARAMETER_LONG + " <count>] --"
+                + SOURCE_CSV_PARAMETER_LONG + " <source CSV file, folder or pattern>";
     }
 
     /**
@@ -160,9 +567,118 @@ public class CSVUploader extends AbstractSpringAwareUAPIClient {
         // Pull args from command line
         sourceCSV = commandLine.getOptionValue(SOURCE_CSV_PARAMETER_SHORT);
         autoPublish = commandLine.hasOption(AUTO_PUBLISH_PARAMETER_SHORT);
+        resume = commandLine.hasOption(RESUME_PARAMETER_SHORT);
+        journalPath = commandLine.getOptionValue(JOURNAL_PARAMETER_SHORT);
+        Long batchSize = parsePositiveNumber(commandLine, PUBLISH_BATCH_SIZE_PARAMETER_SHORT,
+                PUBLISH_BATCH_SIZE_PARAMETER_LONG);
+        Long interval = parsePositiveNumber(commandLine, PUBLISH_INTERVAL_PARAMETER_SHORT,
+                PUBLISH_INTERVAL_PARAMETER_LONG);
+        Long threads = parsePositiveNumber(commandLine, PARSE_THREADS_PARAMETER_SHORT, PARSE_THREADS_PARAMETER_LONG);
+        Long recordRate = parsePositiveNumber(commandLine, MAX_RECORD_RATE_PARAMETER_SHORT,
+                MAX_RECORD_RATE_PARAMETER_LONG);
+        Long writeRate = parsePositiveNumber(commandLine, MAX_WRITE_RATE_PARAMETER_SHORT,
+                MAX_WRITE_RATE_PARAMETER_LONG);
+        Long latency = parsePositiveNumber(commandLine, TARGET_LATENCY_PARAMETER_SHORT,
+                TARGET_LATENCY_PARAMETER_LONG);
+        Long shards = parsePositiveNumber(commandLine, SHARDS_PARAMETER_SHORT, SHARDS_PARAMETER_LONG);
+        Long files = parsePositiveNumber(commandLine, FILE_THREADS_PARAMETER_SHORT, FILE_THREADS_PARAMETER_LONG);
+        if (batchSize == null || interval == null || threads == null || recordRate == null || writeRate == null
+                || latency == null || shards == null || files == null) {
+            return false;
+        }
+        String shardSpec = commandLine.getOptionValue(SHARD_PARAMETER_SHORT);
+        if (shardSpec != null) {
+            if (shards > 0) {
+                getLogger().error(SHARD_CONFLICT_ERROR);
+                return false;
+            }
+            try {
+                shard = ImportShard.parse(shardSpec);
+            } catch (IllegalArgumentException e) {
+                getLogger().error(String.format(INVALID_SHARD_ERROR, e.getMessage()));
+                return false;
+            }
+        }
+        // resolve the source before the application context is created and the client logs in, so that a mistyped
+        // source fails fast
+        csvFiles = resolveSourceFiles(sourceCSV);
+        if (csvFiles == null) {
+            return false;
+        }
+        shardCount = shards.intValue();
+        if (shardCount > 0) {
+            if (!commandLine.hasOption(PASSWORD_PARAMETER_SHORT)) {
+                getLogger().error(SHARDS_PASSWORD_ERROR);
+                return false;
+            }
+            collectShardArguments(commandLine);
+        }
+        parseThreads = threads.intValue();
+        if (files > 0) {
+            fileThreads = files.intValue();
+        }
+        maxRecordsPerSecond = recordRate;
+        maxWritesPerSecond = writeRate;
+        targetLatency = latency;
+        if (batchSize > 0) {
+            publicationBatchSize = batchSize.intValue();
+        }
+        if (interval > 0) {
+            publicationFlushInterval = TimeUnit.SECONDS.toMillis(interval);
+        }
         return true;
     }
 
+    /**
+     * Collects the command line arguments to pass on to the shard processes: all arguments of this process, except
+     * for the number of shards and the password. The password is kept apart, as the command lines of processes can be
+     * read by all users of the machine.
+     *
+     * @param commandLine the parsed command line
+     */
+    private void collectShardArguments(CommandLine commandLine) {
+        for (Option option : commandLine.getOptions()) {
+            if (SHARDS_PARAMETER_SHORT.equals(option.getOpt())) {
+                continue;
+            }
+            if (PASSWORD_PARAMETER_SHORT.equals(option.getOpt())) {
+                shardPassword = option.getValue();
+                continue;
+            }
+            shardArguments.add("-" + option.getOpt());
+            String[] values = option.getValues();
+            if (values != null) {
+                shardArguments.addAll(Arrays.asList(values));
+            }
+        }
+        shardArguments.addAll(commandLine.getArgList());
+    }
+
+    /**
+     * Parses the value of an optional, positive numeric command line argument.
+     *
+     * @param commandLine the parsed command line
+     * @param shortName   the short name of the argument
+     * @param longName    the long name of the argument, used for error messages
+     * @return the value of the argument, 0 if it is absent or null if it is invalid
+     */
+    private Long parsePositiveNumber(CommandLine commandLine, String shortName, String longName) {
+        String value = commandLine.getOptionValue(shortName);
+        if (value == null) {
+            return 0L;
+        }
+        try {
+            long number = Long.parseLong(value.trim());
+            if (number > 0 && number <= Integer.MAX_VALUE) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        getLogger().error(String.format(INVALID_NUMBER_ERROR, longName, value));
+        return null;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -200,6 +716,11 @@ public class CSVUploader extends AbstractSpringAwareUAPIClient {
     protected void fillInConnectionParameters(Map<String, Object> params) {
         super.fillInConnectionParameters(params);
         params.put(Cap.USE_WORKFLOW, "false");
+        // a shard process gets the password from the process which launched it
+        String password = System.getenv(SHARD_PASSWORD_ENVIRONMENT_VARIABLE);
+        if (shard != null && password != null) {
+            params.put(Cap.PASSWORD, password);
+        }
     }
 
     /**
@@ -207,6 +728,8 @@ public class CSVUploader extends AbstractSpringAwareUAPIClient {
      */
     @Override
     protected void run() {
+      logger.info("Application context and content server connection ready after " +
+              ManagementFactory.getRuntimeMXBean().getUptime() + " ms.");
 
       restrictToAuthorizedGroups = getApplicationContext().getBean("restrictToAuthorizedGroups", Boolean.class);
       authorizedGroups = getApplicationContext().getBean("authorizedGroups", List.class);
@@ -219,27 +742,448 @@ public class CSVUploader extends AbstractSpringAwareUAPIClient {
         reportHeadersToContentProperties = getApplicationContext().getBean("reportHeadersToContentProperties",
                 Map.class);
 
-        // Verify that the source CSV file is a CSV
-        File csvFile = new File(sourceCSV);
-        if (!csvFile.exists()) {
-          getLogger().error(String.format(SOURCE_CSV_ERROR_DNE, sourceCSV));
-        } else if (csvFile.isDirectory()) {
-          getLogger().error(String.format(SOURCE_CSV_ERROR_NOT_CSV, sourceCSV));
+        if (shardCount > 0) {
+          if (csvFiles.size() > 1) {
+            getLogger().error(String.format(SOURCE_CSV_ERROR_NOT_SINGLE, SHARDS_PARAMETER_LONG, csvFiles.size()));
+          } else {
+            runShards(csvFiles.get(0));
+          }
+        } else if (journalPath != null && csvFiles.size() > 1) {
+          getLogger().error(String.format(SOURCE_CSV_ERROR_NOT_SINGLE, JOURNAL_PARAMETER_LONG, csvFiles.size()));
+        } else {
+          importFiles(csvFiles);
+        }
+      }
+    }
+
+    /**
+     * Resolves the source of the import to CSV files. The source may be a CSV file, a folder whose CSV files are all
+     * imported, or a path whose file name is a pattern, e.g. {@code exports/*-nightly.csv}.
+     *
+     * @param source the source given on the command line
+     * @return the CSV files, ordered by name, or null if there are none
+     */
+    private List<File> resolveSourceFiles(String source) {
+        File sourceFile = new File(source);
+        String name = sourceFile.getName();
+        List<File> csvFiles = new ArrayList<>();
+        if (name.chars().anyMatch(c -> GLOB_CHARACTERS.indexOf(c) >= 0)) {
+            File folder = sourceFile.getAbsoluteFile().getParentFile();
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + name);
+            File[] matches = folder.listFiles(file -> file.isFile() && matcher.matches(Paths.get(file.getName())));
+            if (matches != null) {
+                csvFiles.addAll(Arrays.asList(matches));
+            }
+        } else if (!sourceFile.exists()) {
+            getLogger().error(String.format(SOURCE_CSV_ERROR_DNE, source));
+            return null;
+        } else if (sourceFile.isDirectory()) {
+            File[] matches = sourceFile.listFiles(file -> file.isFile() &&
+                    file.getName().toLowerCase(Locale.ROOT).endsWith(".csv"));
+            if (matches != null) {
+                csvFiles.addAll(Arrays.asList(matches));
+            }
         } else {
-          try {
+            csvFiles.add(sourceFile);
+        }
+        if (csvFiles.isEmpty()) {
+            getLogger().error(String.format(SOURCE_CSV_ERROR_NO_FILES, source));
+            return null;
+        }
+        csvFiles.sort(Comparator.comparing(File::getName));
+        return csvFiles;
+    }
+
+    /**
+     * Imports CSV files in the session of this client. Up to {@link #fileThreads} files are imported at the same time.
+     * All files share one publication pipeline and one throttle. The journals are kept until the pipeline has
+     * published the documents of all files, then the journals of the completed files are deleted.
+     *
+     * @param csvFiles the CSV files
+     */
+    private void importFiles(List<File> csvFiles) {
+        PublicationPipeline publicationPipeline = new PublicationPipeline(PublicationPipeline.DEFAULT_QUEUE_CAPACITY,
+                logger);
+        ImportThrottle throttle = new ImportThrottle(maxRecordsPerSecond, maxWritesPerSecond, targetLatency);
+        List<FileImport> fileImports = new ArrayList<>();
+        for (File csvFile : csvFiles) {
+            fileImports.add(new FileImport(csvFile));
+        }
+        if (csvFiles.size() > 1) {
+            logger.info("Importing " + csvFiles.size() + " CSV files, " + Math.min(fileThreads, csvFiles.size()) +
+                    " at a time.");
+        }
+        try {
+            if (fileThreads > 1 && fileImports.size() > 1) {
+                importConcurrently(fileImports, publicationPipeline, throttle);
+            } else {
+                for (FileImport fileImport : fileImports) {
+                    importFile(fileImport, publicationPipeline, throttle);
+                }
+            }
+        } finally {
+            // make sure all documents are approved/published before the journals are deleted
+            publicationPipeline.drain();
+            for (FileImport fileImport : fileImports) {
+                if (fileImport.journal != null) {
+                    if (fileImport.completed) {
+                        // the import is complete, there is nothing left to resume
+                        fileImport.journal.delete();
+                    } else {
+                        fileImport.journal.close();
+                    }
+                }
+                closeReport(fileImport.report);
+            }
+        }
+        if (fileImports.size() > 1) {
+            logSummary(fileImports);
+        }
+    }
+
+    /**
+     * Imports CSV files on a thread pool, on behalf of the user of the session of this client.
+     *
+     * @param fileImports         the imports of the CSV files
+     * @param publicationPipeline the shared publication pipeline
+     * @param throttle            the shared throttle
+     */
+    private void importConcurrently(List<FileImport> fileImports, PublicationPipeline publicationPipeline,
+                                    ImportThrottle throttle) {
+        CapSession session = getContentRepository().getConnection().getSession();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(fileThreads, fileImports.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (FileImport fileImport : fileImports) {
+                futures.add(executor.submit(() -> {
+                    CapSession previousSession = session.activate();
+                    try {
+                        importFile(fileImport, publicationPipeline, throttle);
+                    } finally {
+                        if (previousSession != null) {
+                            previousSession.activate();
+                        } else {
+                            session.deactivate();
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    FileImport fileImport = fileImports.get(i);
+                    fileImport.error = e.getCause().getMessage();
+                    getLogger().error(String.format(ERROR_PARSING_CSV, fileImport.csvFile.getName(),
+                            e.getCause().getMessage()), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted while importing the CSV files.");
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Imports a CSV file. The journal and report of the import are opened, but not closed, see
+     * {@link #importFiles(List)}. The journal is only required if the import is resumed or the journal file is given,
+     * otherwise the file is imported without a journal if it cannot be written.
+     *
+     * @param fileImport          the import of the CSV file
+     * @param publicationPipeline the shared publication pipeline
+     * @param throttle            the shared throttle
+     */
+    private void importFile(FileImport fileImport, PublicationPipeline publicationPipeline, ImportThrottle throttle) {
+        File csvFile = fileImport.csvFile;
+        // the local files of a shard are kept apart from those of the other shards
+        File shardBase = shard != null ? new File(csvFile.getPath() + shard.getFileSuffix()) : csvFile;
+        File journalFile = journalPath != null ? new File(journalPath + (shard != null ? shard.getFileSuffix() : ""))
+                : ImportJournal.getDefaultFile(shardBase);
+        ImportJournal journal = new ImportJournal(journalFile, logger);
+        try {
+            if (resume) {
+                journal.load(csvFile);
+            }
+            journal.open(csvFile, resume);
+            fileImport.journal = journal;
+        } catch (IOException e) {
+            if (resume || journalPath != null) {
+                getLogger().error(String.format(JOURNAL_ERROR, journalFile.getPath(), e.getMessage()));
+                fileImport.error = e.getMessage();
+                return;
+            }
+            // the journal is only needed to resume the import, e.g. the directory of the CSV file may be read-only
+            logger.warn("Cannot write the import journal " + journalFile.getPath() + ", importing without it. " +
+                    "An interrupted import cannot be resumed: " + e.getMessage());
+            journal = null;
+        }
+        if (shard != null) {
+            File reportFile = ImportReport.getDefaultFile(shardBase);
+            try {
+                fileImport.report = new ImportReport(reportFile, resume, logger);
+            } catch (IOException e) {
+                getLogger().error(String.format(REPORT_ERROR, reportFile.getPath(), e.getMessage()));
+                fileImport.error = e.getMessage();
+                return;
+            }
+        }
+        try {
             // Pass the CSV to the CSVParser
-            FileInputStream fileStream = new FileInputStream(csvFile);
-            CSVParser parser = new CSVParser(new BufferedReader(new InputStreamReader(fileStream, StandardCharsets.UTF_8)),
-                    CSVFormat.EXCEL.withHeader());
-            csvHandler = new CSVParserHelper(autoPublish, getContentRepository(), logger, null);
-            logger.info("CSVParser: executing ...");
-            csvHandler.parseCSV(parser, reportHeadersToContentProperties);
-            logger.info("CSVParser: Completed content upload.");
-          } catch (IOException e) {
+            CSVParserHelper handler = new CSVParserHelper(autoPublish, getContentRepository(), logger, null);
+            handler.setPublicationBatchSize(publicationBatchSize);
+            handler.setPublicationFlushInterval(publicationFlushInterval);
+            handler.setSharedPublicationPipeline(publicationPipeline);
+            handler.setJournal(journal);
+            handler.setThrottle(throttle);
+            handler.setShard(shard);
+            handler.setProgressListener(fileImport.report);
+            configureProcessors(handler);
+            fileImport.handler = handler;
+            logger.info("CSVParser: executing " + csvFile.getName() + (shard != null ? ", shard " + shard : "") +
+                    " ...");
+            if (parseThreads > 0) {
+                parseInChunks(handler, csvFile, journal);
+            } else {
+                try (CSVParser parser = journal != null && journal.hasCheckpoint() ? openParserAtCheckpoint(csvFile, journal)
+                        : openParser(csvFile)) {
+                    handler.parseCSV(reportFirstRecord(ImportRecord.ofAll(parser)), parser.getHeaderMap(),
+                            reportHeadersToContentProperties);
+                }
+            }
+            logger.info("CSVParser: Completed content upload of " + csvFile.getName() + ".");
+            fileImport.completed = true;
+        } catch (IOException e) {
             getLogger().error(String.format(ERROR_PARSING_CSV, e.getMessage(), e));
-          }
+            fileImport.error = e.getMessage();
+        }
+    }
+
+    /**
+     * Logs the outcome of the import of several CSV files.
+     *
+     * @param fileImports the imports of the CSV files
+     */
+    private void logSummary(List<FileImport> fileImports) {
+        int written = 0;
+        int unchanged = 0;
+        int failed = 0;
+        int failedFiles = 0;
+        for (FileImport fileImport : fileImports) {
+            CSVParserHelper handler = fileImport.handler;
+            if (handler != null) {
+                written += handler.getContentImported();
+                unchanged += handler.getContentSkipped();
+                failed += handler.getContentFailed();
+                logger.info(fileImport.csvFile.getName() + ": " + handler.getContentImported() + " written, " +
+                        handler.getContentSkipped() + " unchanged, " + handler.getContentFailed() + " failed" +
+                        (fileImport.completed ? "." : ", not completed: " + fileImport.error));
+            } else {
+                logger.info(fileImport.csvFile.getName() + ": not imported: " + fileImport.error);
+            }
+            if (!fileImport.completed) {
+                failedFiles++;
+            }
+        }
+        logger.info("CSVParser: Completed content upload of " + (fileImports.size() - failedFiles) + " of " +
+                fileImports.size() + " CSV files: " + written + " written, " + unchanged + " unchanged, " + failed +
+                " failed.");
+    }
+
+    /**
+     * Closes the report of a shard and logs the outcome of its records.
+     *
+     * @param report the report, may be null
+     */
+    private void closeReport(ImportReport report) {
+        if (report == null) {
+            return;
+        }
+        logger.info("Shard " + shard + ": " + report.getCount(ImportProgressListener.Outcome.WRITTEN) + " written, " +
+                report.getCount(ImportProgressListener.Outcome.UNCHANGED) + " unchanged, " +
+                report.getCount(ImportProgressListener.Outcome.FAILED) + " failed.");
+        try {
+            report.close();
+        } catch (IOException e) {
+            logger.warn("Could not close the import report of shard " + shard, e);
         }
-      }
+    }
+
+    /**
+     * Imports a CSV file in several processes, one per shard. Each process is started with the arguments of this
+     * process and its shard, and writes its output to a log file next to the CSV file. Once all processes have
+     * finished, their reports are merged into the report of the CSV file.
+     *
+     * @param csvFile the CSV file
+     */
+    private void runShards(File csvFile) {
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+        List<String> jvmArguments = new ArrayList<>();
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            // a debugger port can only be bound by one process, and a class data archive only be written by one
+            if (!argument.startsWith("-agentlib:jdwp") && !argument.startsWith("-Xrunjdwp")
+                    && !argument.startsWith("-XX:ArchiveClassesAtExit")) {
+                jvmArguments.add(argument);
+            }
+        }
+        List<ImportShard> shards = new ArrayList<>();
+        List<Process> processes = new ArrayList<>();
+        List<File> reports = new ArrayList<>();
+        try {
+            for (int index = 1; index <= shardCount; index++) {
+                ImportShard processShard = new ImportShard(index, shardCount);
+                File shardBase = new File(csvFile.getPath() + processShard.getFileSuffix());
+                List<String> command = new ArrayList<>();
+                command.add(java);
+                command.addAll(jvmArguments);
+                command.add("-cp");
+                command.add(System.getProperty("java.class.path"));
+                command.add(CSVUploader.class.getName());
+                command.addAll(shardArguments);
+                command.add("--" + SHARD_PARAMETER_LONG);
+                command.add(processShard.toString());
+                File log = new File(shardBase.getPath() + ".log");
+                ProcessBuilder processBuilder = new ProcessBuilder(command).redirectErrorStream(true)
+                        .redirectOutput(log);
+                processBuilder.environment().put(SHARD_PASSWORD_ENVIRONMENT_VARIABLE, shardPassword);
+                processes.add(processBuilder.start());
+                shards.add(processShard);
+                reports.add(ImportReport.getDefaultFile(shardBase));
+                logger.info("Started shard " + processShard + ", logging to " + log.getPath());
+            }
+            boolean failed = false;
+            for (int i = 0; i < processes.size(); i++) {
+                int exitCode = processes.get(i).waitFor();
+                logger.info("Shard " + shards.get(i) + " finished with exit code " + exitCode + ".");
+                failed |= exitCode != 0;
+            }
+            File report = ImportReport.getDefaultFile(csvFile);
+            Map<ImportProgressListener.Outcome, Long> counts = ImportReport.merge(reports, report, logger);
+            logger.info("CSVParser: Completed content upload in " + shardCount + " shards" +
+                    (failed ? ", some of which failed" : "") + ": " +
+                    counts.getOrDefault(ImportProgressListener.Outcome.WRITTEN, 0L) + " written, " +
+                    counts.getOrDefault(ImportProgressListener.Outcome.UNCHANGED, 0L) + " unchanged, " +
+                    counts.getOrDefault(ImportProgressListener.Outcome.FAILED, 0L) + " failed. Report: " +
+                    report.getPath());
+        } catch (IOException e) {
+            getLogger().error(String.format(ERROR_PARSING_CSV, e.getMessage(), e));
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted while waiting for the shards, stopping them.");
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Process process : processes) {
+                if (process.isAlive()) {
+                    process.destroy();
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the processors of custom properties to the CSV handler, if they are configured in the application
+     * context as bean {@value #PROPERTY_VALUE_OBJECT_PROCESSORS_BEAN}. Otherwise, the default processors are used.
+     *
+     * @param handler the CSV handler
+     */
+    private void configureProcessors(CSVParserHelper handler) {
+        if (getApplicationContext().containsBean(PROPERTY_VALUE_OBJECT_PROCESSORS_BEAN)) {
+            handler.setPropertyValueObjectProcessors(getApplicationContext().getBean(
+                    PROPERTY_VALUE_OBJECT_PROCESSORS_BEAN, Map.class));
+        }
+    }
+
+    /**
+     * Imports a CSV file which is parsed in chunks in parallel. If the journal has a checkpoint, the chunks before the
+     * checkpoint are skipped.
+     *
+     * @param handler the CSV handler
+     * @param csvFile the CSV file
+     * @param journal the journal of the import, may be null
+     * @throws IOException if the file cannot be read
+     */
+    private void parseInChunks(CSVParserHelper handler, File csvFile, ImportJournal journal) throws IOException {
+        try (ChunkedCSVFileReader reader = new ChunkedCSVFileReader(csvFile, ChunkedCSVFileReader.DEFAULT_CHUNK_SIZE,
+                parseThreads, logger)) {
+            if (journal != null && journal.hasCheckpoint()) {
+                reader.setStartCharacterPosition(journal.getCheckpointCharacterPosition());
+            }
+            reader.open();
+            handler.parseCSV(reportFirstRecord(reader), reader.getHeaderMap(), reportHeadersToContentProperties);
+        }
+    }
+
+    /**
+     * Wraps the records of a CSV file to log the time from the start of the JVM to the first record read in this run,
+     * which is the startup time of an import as a user experiences it.
+     *
+     * @param records the records
+     * @return the records, unchanged
+     */
+    private Iterable<ImportRecord> reportFirstRecord(Iterable<ImportRecord> records) {
+        return () -> {
+            Iterator<ImportRecord> iterator = records.iterator();
+            return new Iterator<ImportRecord>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public ImportRecord next() {
+                    ImportRecord record = iterator.next();
+                    if (!firstRecordRead.get() && firstRecordRead.compareAndSet(false, true)) {
+                        logger.info("Time to first record: " + ManagementFactory.getRuntimeMXBean().getUptime() +
+                                " ms after the start of the JVM.");
+                    }
+                    return record;
+                }
+            };
+        };
+    }
+
+    /**
+     * Opens a CSV parser on a CSV file.
+     *
+     * @param csvFile the CSV file
+     * @return the parser, positioned before the first record
+     * @throws IOException if the file cannot be read
+     */
+    private CSVParser openParser(File csvFile) throws IOException {
+        return new CSVParser(new BufferedReader(new InputStreamReader(new FileInputStream(csvFile),
+                StandardCharsets.UTF_8)), CSVFormat.EXCEL.withHeader());
+    }
+
+    /**
+     * Opens a CSV parser on a CSV file, positioned at the checkpoint of a journal. The header is read from the start
+     * of the file, then the characters up to the checkpoint are skipped without being parsed.
+     *
+     * @param csvFile the CSV file
+     * @param journal the journal of a previous, interrupted import of the file
+     * @return the parser, positioned before the first record of the last committed window
+     * @throws IOException if the file cannot be read
+     */
+    private CSVParser openParserAtCheckpoint(File csvFile, ImportJournal journal) throws IOException {
+        List<String> headerNames;
+        try (CSVParser headerParser = openParser(csvFile)) {
+            headerNames = headerParser.getHeaderNames();
+        }
+        long characterPosition = journal.getCheckpointCharacterPosition();
+        Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(csvFile),
+                StandardCharsets.UTF_8));
+        long remaining = characterPosition;
+        while (remaining > 0) {
+            long skipped = reader.skip(remaining);
+            if (skipped <= 0) {
+                reader.close();
+                throw new IOException("The source CSV file is shorter than the position recorded in the journal.");
+            }
+            remaining -= skipped;
+        }
+        logger.info("Skipped to record " + journal.getCheckpointRecordNumber() + " at character position " +
+                characterPosition + ".");
+        return new CSVParser(reader, CSVFormat.EXCEL.withHeader(headerNames.toArray(new String[0])),
+                characterPosition, journal.getCheckpointRecordNumber());
     }
 
   /**
@@ -272,6 +1216,10 @@ public class CSVUploader extends AbstractSpringAwareUAPIClient {
         CSVParser parser = new CSVParser(new BufferedReader(new InputStreamReader(fileInputStream, StandardCharsets.UTF_8)),
                 CSVFormat.EXCEL.withHeader());
         csvHandler = new CSVParserHelper(autoPublish, getContentRepository(), logger, null);
+        csvHandler.setPublicationBatchSize(publicationBatchSize);
+        csvHandler.setPublicationFlushInterval(publicationFlushInterval);
+        csvHandler.setThrottle(new ImportThrottle(maxRecordsPerSecond, maxWritesPerSecond, targetLatency));
+        configureProcessors(csvHandler);
         logger.info("CSVParser: executing ...");
         csvHandler.parseCSV(parser, reportHeadersToContentProperties);
         logger.info("CSVParser: Completed content upload.");
@@ -308,6 +1256,26 @@ public class CSVUploader extends AbstractSpringAwareUAPIClient {
     this.restrictToAuthorizedGroups = restrictToAuthorizedGroups;
   }
 
+    /**
+     * The state of the import of one CSV file.
+     */
+    private static class FileImport {
+        private final File csvFile;
+        private ImportJournal journal;
+        private ImportReport report;
+        private CSVParserHelper handler;
+        private boolean completed;
+
+        /**
+         * The reason the import has not been completed.
+         */
+        private volatile String error;
+
+        FileImport(File csvFile) {
+            this.csvFile = csvFile;
+        }
+    }
+
     /**
      * Main function called from the command line. Passes the arguments to the class.
      *
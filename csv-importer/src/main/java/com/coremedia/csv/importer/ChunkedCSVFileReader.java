@@ -0,0 +1,372 @@
+package com.coremedia.csv.importer;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.slf4j.Logger;
+
+import java.io.CharArrayReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads a UTF-8 encoded CSV file in the EXCEL format in chunks which are parsed in parallel. The file is memory-mapped
+ * and scanned once for record boundaries, then split into chunks of whole records, which are decoded and tokenized by
+ * a {@link CSVTokenizer} on a thread pool. The records refer to the decoded chunk, their values are not copied.
+ * The records are delivered in their original order, with the same record numbers and character positions as if the
+ * file had been parsed sequentially, so that they can be recorded in an {@link ImportJournal}.
+ * <p>
+ * The boundary scan toggles the quoted state at each quote character, which matches the EXCEL format as long as quotes
+ * only occur in quoted values, as written by the exporter. If a chunk does not contain the number of records found by
+ * the scan, reading fails rather than delivering misaligned records.
+ */
+public class ChunkedCSVFileReader implements Iterable<ImportRecord>, Closeable {
+
+    /**
+     * The default minimum size of a chunk in bytes.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * The size of the mapped segments in which the file is scanned for record boundaries.
+     */
+    private static final long SCAN_SEGMENT_SIZE = 1L << 30;
+
+    /**
+     * Counter used to name the parser threads.
+     */
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final File file;
+    private final int chunkSize;
+    private final int threads;
+    private final Logger logger;
+
+    /**
+     * The character position before which all chunks are skipped.
+     */
+    private long startCharacterPosition;
+
+    private FileChannel channel;
+    private ExecutorService executor;
+    private List<String> headerNames = Collections.emptyList();
+    private Map<String, Integer> headerMap = Collections.emptyMap();
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param file      the CSV file to read
+     * @param chunkSize the minimum size of a chunk in bytes, chunks end at the first record boundary after that size
+     * @param threads   the number of threads parsing chunks
+     * @param logger    the logger
+     */
+    public ChunkedCSVFileReader(File file, int chunkSize, int threads, Logger logger) {
+        if (chunkSize < 1 || threads < 1) {
+            throw new IllegalArgumentException("chunkSize and threads must be positive, but were " + chunkSize +
+                    " and " + threads);
+        }
+        this.file = file;
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+        this.logger = logger;
+    }
+
+    /**
+     * Skips all chunks which end before a character position, e.g. the checkpoint of a journal. Must be called before
+     * {@link #open()}.
+     *
+     * @param startCharacterPosition the character position of the first record to read
+     */
+    public void setStartCharacterPosition(long startCharacterPosition) {
+        this.startCharacterPosition = startCharacterPosition;
+    }
+
+    /**
+     * Opens the file, scans it for record boundaries and reads the header.
+     *
+     * @throws IOException if the file cannot be read
+     */
+    public void open() throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        long start = System.currentTimeMillis();
+        Chunk header = scan();
+        if (header != null) {
+            CharBuffer chars = decode(header);
+            try (CSVParser parser = new CSVParser(new CharArrayReader(chars.array(),
+                    chars.arrayOffset() + chars.position(), chars.remaining()), CSVFormat.EXCEL.withHeader())) {
+                headerNames = parser.getHeaderNames();
+                headerMap = parser.getHeaderMap();
+            }
+        }
+        logger.info("Split " + file.getName() + " into " + chunks.size() + " chunks in " +
+                (System.currentTimeMillis() - start) + " ms.");
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "csv-parser-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Scans the file for record boundaries and splits it into chunks. Line breaks and quotes are single bytes in
+     * UTF-8 which never occur within multi-byte sequences, so the bytes can be scanned without decoding them. The
+     * characters are counted along the way, as UTF-16 code units like a {@link Reader} counts them.
+     *
+     * @return the chunk holding the header record, or null if the file is empty
+     */
+    private Chunk scan() throws IOException {
+        long size = channel.size();
+        ChunkBuilder builder = new ChunkBuilder();
+        boolean quoted = false;
+        // a carriage return ends a record, unless it is followed by a line feed which then ends the record
+        boolean pendingCarriageReturn = false;
+        for (long segmentStart = 0; segmentStart < size; segmentStart += SCAN_SEGMENT_SIZE) {
+            int segmentLength = (int) Math.min(SCAN_SEGMENT_SIZE, size - segmentStart);
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentLength);
+            for (int i = 0; i < segmentLength; i++) {
+                byte b = segment.get(i);
+                long position = segmentStart + i;
+                if (pendingCarriageReturn) {
+                    pendingCarriageReturn = false;
+                    if (b != '\n') {
+                        builder.recordEnd(position);
+                    }
+                }
+                if ((b & 0xC0) != 0x80) {
+                    // a 4-byte sequence is decoded into a surrogate pair
+                    builder.characters += (b & 0xF8) == 0xF0 ? 2 : 1;
+                }
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (!quoted) {
+                    if (b == '\n') {
+                        builder.recordEnd(position + 1);
+                    } else if (b == '\r') {
+                        pendingCarriageReturn = true;
+                    }
+                }
+            }
+        }
+        if (builder.recordStart < size) {
+            // the last record has no line break
+            builder.recordEnd(size);
+        }
+        builder.chunkEnd(size);
+        return builder.header;
+    }
+
+    /**
+     * Gets the names of the columns, in column order.
+     *
+     * @return the header names
+     */
+    public List<String> getHeaderNames() {
+        return headerNames;
+    }
+
+    /**
+     * Gets the column indexes of the headers.
+     *
+     * @return the header map, in column order
+     */
+    public Map<String, Integer> getHeaderMap() {
+        return headerMap;
+    }
+
+    /**
+     * Returns an iterator over the records of the file, in their original order. Chunks are parsed ahead on the thread
+     * pool, at most two per thread. If a chunk cannot be parsed, the iterator throws an {@link IllegalStateException}.
+     *
+     * @return the iterator
+     */
+    @Override
+    public Iterator<ImportRecord> iterator() {
+        return new Iterator<ImportRecord>() {
+            private final Deque<Future<List<ImportRecord>>> parsing = new ArrayDeque<>();
+            private int nextChunk;
+            private Iterator<ImportRecord> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    while (parsing.size() < 2 * threads && nextChunk < chunks.size()) {
+                        Chunk chunk = chunks.get(nextChunk++);
+                        parsing.add(executor.submit(() -> parse(chunk)));
+                    }
+                    Future<List<ImportRecord>> next = parsing.poll();
+                    if (next == null) {
+                        return false;
+                    }
+                    current = await(next).iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public ImportRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+
+    private static List<ImportRecord> await(Future<List<ImportRecord>> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while parsing the CSV file.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not parse the CSV file: " + e.getCause().getMessage(),
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Parses the records of a chunk.
+     */
+    private List<ImportRecord> parse(Chunk chunk) throws IOException {
+        CharBuffer chars = decode(chunk);
+        CSVTokenizer tokenizer = new CSVTokenizer(chars.array(), chars.arrayOffset() + chars.position(),
+                chars.remaining(), chunk.characterOffset, chunk.firstRecordNumber);
+        List<ImportRecord> records = new ArrayList<>(chunk.recordCount);
+        for (ImportRecord record = tokenizer.next(); record != null; record = tokenizer.next()) {
+            records.add(record);
+        }
+        if (records.size() != chunk.recordCount) {
+            throw new IOException("Found " + records.size() + " records at character position " +
+                    chunk.characterOffset + " instead of " + chunk.recordCount + ". The file contains quotes " +
+                    "in unquoted values and has to be parsed sequentially.");
+        }
+        return records;
+    }
+
+    private CharBuffer decode(Chunk chunk) throws IOException {
+        MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, chunk.byteOffset, chunk.byteLength);
+        return StandardCharsets.UTF_8.decode(bytes);
+    }
+
+    /**
+     * Stops the parser threads and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * A range of whole records in the file.
+     */
+    private static class Chunk {
+        private long byteOffset;
+        private int byteLength;
+        private long characterOffset;
+        private long firstRecordNumber;
+        private int recordCount;
+    }
+
+    /**
+     * Collects the chunks while the file is scanned.
+     */
+    private class ChunkBuilder {
+
+        /**
+         * The number of characters before the current scan position.
+         */
+        private long characters;
+
+        /**
+         * The number of records ended so far, including the header record.
+         */
+        private long records;
+
+        /**
+         * The byte and character position of the start of the current record.
+         */
+        private long recordStart;
+        private long recordStartCharacters;
+
+        private Chunk header;
+
+        /**
+         * The chunk being built, null if the next record starts a new chunk.
+         */
+        private Chunk chunk;
+
+        /**
+         * Called at the end of each record, with the byte position after its line break.
+         */
+        void recordEnd(long position) throws IOException {
+            records++;
+            if (header == null) {
+                header = new Chunk();
+                header.byteLength = checkLength(position, 0);
+                header.recordCount = 1;
+            } else {
+                if (chunk == null) {
+                    chunk = new Chunk();
+                    chunk.byteOffset = recordStart;
+                    chunk.characterOffset = recordStartCharacters;
+                    // the header is not numbered, like the records of a CSVParser with a header
+                    chunk.firstRecordNumber = records - 1;
+                }
+                chunk.recordCount++;
+            }
+            recordStart = position;
+            recordStartCharacters = characters;
+            if (chunk != null && position - chunk.byteOffset >= chunkSize) {
+                chunkEnd(position);
+            }
+        }
+
+        /**
+         * Completes the current chunk, if any, at a record boundary.
+         */
+        void chunkEnd(long position) throws IOException {
+            if (chunk == null) {
+                return;
+            }
+            chunk.byteLength = checkLength(position - chunk.byteOffset, chunk.characterOffset);
+            // chunks which end before the start position contain no record to read
+            if (characters > startCharacterPosition) {
+                chunks.add(chunk);
+            }
+            chunk = null;
+        }
+
+        private int checkLength(long length, long characterOffset) throws IOException {
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("The record at character position " + characterOffset +
+                        " is too large to be parsed in chunks.");
+            }
+            return (int) length;
+        }
+    }
+}
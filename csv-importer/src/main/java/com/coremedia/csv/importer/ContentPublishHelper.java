@@ -13,6 +13,10 @@ import com.coremedia.cap.content.publication.PublicationSet;
 import com.coremedia.cap.content.publication.results.PublicationResult;
 import com.coremedia.cap.content.publication.results.PublicationResultItem;
 import com.google.common.collect.Iterables;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 
@@ -20,6 +24,8 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 /**
@@ -27,6 +33,16 @@ import java.util.regex.Pattern;
  */
 public class ContentPublishHelper {
 
+    /**
+     * The name of the counter of the published documents.
+     */
+    public static final String METRIC_PUBLISHED = "csv.import.published";
+
+    /**
+     * The name of the timer of the publications, recorded per publication set and tagged with its outcome.
+     */
+    public static final String METRIC_PUBLISH = "csv.import.publish";
+
     private ContentRepository contentRepository;
     private Logger logger;
     private List<String> invalidFileNameChars = Collections.singletonList("/");
@@ -34,9 +50,29 @@ public class ContentPublishHelper {
     @NonNull
     private final Collection<String> warnings = Collections.synchronizedList(new ArrayList<String>());
 
+    /**
+     * The meters of the publication, registered by {@link #setMeterRegistry(MeterRegistry)}.
+     */
+    private Counter publishedCounter;
+    private Timer publishSuccessTimer;
+    private Timer publishFailureTimer;
+
     public ContentPublishHelper(ContentRepository contentRepository, Logger logger) {
         this.contentRepository = contentRepository;
         this.logger = logger;
+        setMeterRegistry(Metrics.globalRegistry);
+    }
+
+    /**
+     * Sets the registry in which the publication records its metrics. By default, the metrics are recorded in the
+     * global registry of Micrometer.
+     *
+     * @param meterRegistry the registry
+     */
+    public void setMeterRegistry(@NonNull MeterRegistry meterRegistry) {
+        publishedCounter = meterRegistry.counter(METRIC_PUBLISHED);
+        publishSuccessTimer = meterRegistry.timer(METRIC_PUBLISH, "outcome", "success");
+        publishFailureTimer = meterRegistry.timer(METRIC_PUBLISH, "outcome", "failure");
     }
 
     /**
@@ -57,11 +93,24 @@ public class ContentPublishHelper {
 
     /**
      * Approves and/or publishes updated content depending on state of prior version.
+     * <p>
+     * The state of all contents is resolved up front for the whole collection. Places and versions are then
+     * approved in repository batches and the versions are published in one publication set. If a group fails, it is
+     * bisected to find the failing contents, so that the rest of the group is still approved and published.
+     * <p>
+     * A content is removed from the given map once its previous state has been applied, or once it failed on its own.
+     * If the content repository fails, e.g. because the session has been closed, the contents whose state has not been
+     * applied yet remain in the map, so that they can be retried.
      *
-     * @param contents The collection of content objects that were updated
+     * @param priorVersions The content objects that were updated, with the versions they had before the update, as
+     *                      recorded by {@link #updateAll(Map, Map)}
      * @param autoPublish Whether content should automatically be published if prior version was published
+     * @return the contents whose previous state could not be applied, including the contents remaining in the map
      */
-    public void applyPreviousState(Collection<Content> contents, boolean autoPublish) {
+    @NonNull
+    public Collection<Content> applyPreviousState(Map<Content, Version> priorVersions, boolean autoPublish) {
+        Set<Content> failedContents = new HashSet<>();
+        List<Content> contents = new ArrayList<>(priorVersions.keySet());
         try {
             contentRepository.getConnection().flush();
             if (contents.size() > 0) {
@@ -70,8 +119,8 @@ public class ContentPublishHelper {
 
                 PublicationService publicationService = contentRepository.getPublicationService();
                 // assemble list of content to be approved/published based on prior version
-                for (Content content : contents) {
-                    Version priorVersion = content.getCheckedOutVersion();
+                for (Content content : contentRepository.withPrefetch(contents, BatchTemplate.DEFAULT_BATCH_SIZE)) {
+                    Version priorVersion = getPriorVersion(content, priorVersions);
                     if (priorVersion == null)
                         continue;
                     if (publicationService.isPublished(priorVersion)) {
@@ -87,30 +136,48 @@ public class ContentPublishHelper {
                 }
                 // check in updated content
                 checkInAll(contents);
+                // the previous state of the other contents has been applied by the checkin
+                priorVersions.keySet().retainAll(new HashSet<>(toBeApproved));
+
+                // resolve which places and versions still need to be approved
+                List<Content> placesToApprove = new ArrayList<>();
+                List<Version> versionsToApprove = new ArrayList<>();
+                for (Content content : toBeApproved) {
+                    if (!publicationService.isPlaceApproved(content))
+                        placesToApprove.add(content);
+                    Version version = content.getCheckedInVersion();
+                    if (version != null && !publicationService.isApproved(version))
+                        versionsToApprove.add(version);
+                }
 
                 // approve content
                 logger.info("Approving " + toBeApproved.size() + " documents");
-                for(Content content : toBeApproved) {
-                    Version version = content.getCheckedInVersion();
-                    if(!publicationService.isPlaceApproved(content))
-                        publicationService.approvePlace(content);
-                    if(!publicationService.isApproved(version))
-                        publicationService.approve(version);
+                failedContents.addAll(bisect(placesToApprove, this::approvePlaces, "approve the place of"));
+                for (Version version : bisect(versionsToApprove, this::approveVersions, "approve")) {
+                    failedContents.add(version.getContainingContent());
                 }
 
+                // the contents which are only approved are done, as are the contents which failed on their own
+                priorVersions.keySet().retainAll(new HashSet<>(toBePublished));
+                priorVersions.keySet().removeAll(failedContents);
+
                 // publish content
                 Collection<Version> toBePublishedVersions = new ArrayList<>();
                 for(Content content : toBePublished) {
                     Version version = content.getCheckedInVersion();
-                    if(!publicationService.isPlaceApproved(content))
-                        publicationService.approvePlace(content);
-                    if(!publicationService.isPublished(version))
+                    if (failedContents.contains(content)) {
+                        logger.warn("Skipping publication of content " + content.getId() + " which could not be approved.");
+                    } else if(version != null && !publicationService.isPublished(version)) {
                         toBePublishedVersions.add(version);
+                    }
                 }
                 if(autoPublish) {
-                    logger.info("Publishing " + toBePublished.size() + " documents");
-                    publish(toBePublishedVersions);
+                    logger.info("Publishing " + toBePublishedVersions.size() + " documents");
+                    for (Version version : publish(toBePublishedVersions)) {
+                        failedContents.add(version.getContainingContent());
+                    }
                 }
+                priorVersions.clear();
             }
         } catch (SessionNotOpenException snoe) {
             logger.error("SessionNotOpenException: Can't establish session with the content repository.", snoe);
@@ -119,26 +186,174 @@ public class ContentPublishHelper {
         } catch (Exception e) {
             logger.error("Could not publish documents ", e);
         }
+        // the contents already approved/published in this call are not reported, the contents which have not been
+        // handled yet are, and remain to be retried
+        priorVersions.keySet().removeAll(failedContents);
+        failedContents.addAll(priorVersions.keySet());
+        return failedContents;
+    }
+
+    /**
+     * Restores the versions contents had before they were updated by a previous, interrupted run of the import, so
+     * that their previous approved/published state can still be applied. The prior version is taken to be the version
+     * before the latest checked-in version.
+     *
+     * @param contents      the updated contents
+     * @param priorVersions the map to which the contents are added with their prior versions, unless it contains them
+     *                      already
+     */
+    public void restorePriorVersions(Collection<Content> contents, Map<Content, Version> priorVersions) {
+        for (Content content : contents) {
+            Version priorVersion = null;
+            if (!content.isCheckedOut()) {
+                List<Version> versions = content.getVersions();
+                if (versions.size() > 1) {
+                    priorVersion = versions.get(versions.size() - 2);
+                }
+            }
+            priorVersions.putIfAbsent(content, priorVersion);
+        }
+    }
+
+    /**
+     * Gets the version an updated content had before the update.
+     *
+     * @param content       the updated content
+     * @param priorVersions the recorded prior versions
+     * @return the prior version, or null if it is unknown
+     */
+    @Nullable
+    private static Version getPriorVersion(Content content, Map<Content, Version> priorVersions) {
+        if (content.isCheckedOutByCurrentSession()) {
+            return content.getCheckedOutVersion();
+        }
+        return priorVersions.get(content);
+    }
+
+    /**
+     * Approves the places of the given contents in repository batches.
+     *
+     * @param contents the contents whose places to approve
+     */
+    private void approvePlaces(List<Content> contents) {
+        new BatchTemplate<Content>(contentRepository, BatchTemplate.DEFAULT_BATCH_SIZE, logger) {
+            @Override
+            protected void process(com.coremedia.cap.undoc.content.ContentRepository.Batch batch, Content content) {
+                batch.approvePlace(content);
+            }
+        }.execute(contents);
     }
 
     /**
-     * Publish a collection of documents.
+     * Approves the given versions in repository batches.
+     *
+     * @param versions the versions to approve
+     */
+    private void approveVersions(List<Version> versions) {
+        new BatchTemplate<Version>(contentRepository, BatchTemplate.DEFAULT_BATCH_SIZE, logger) {
+            @Override
+            protected void process(com.coremedia.cap.undoc.content.ContentRepository.Batch batch, Version version) {
+                batch.approve(version);
+            }
+        }.execute(versions);
+    }
+
+    /**
+     * Applies an operation to a group of items. If the operation fails for the group because of some of the items,
+     * the items which were not completed are split in halves which are retried separately, until the failing items
+     * are isolated. Failures which are not caused by the items, e.g. a closed session or a failed flush, are not
+     * bisected, as every smaller group would fail the same way.
+     *
+     * @param items       the items to which to apply the operation
+     * @param operation   the operation to apply to a group of items
+     * @param description description of the operation, used for logging
+     * @param <T>         the type of the items
+     * @return the items for which the operation failed
+     * @throws RuntimeException the failure of the operation, if it is not caused by the items
+     */
+    private <T> List<T> bisect(List<T> items, Consumer<List<T>> operation, String description) {
+        List<T> failedItems = new ArrayList<>();
+        if (items.isEmpty()) {
+            return failedItems;
+        }
+        try {
+            operation.accept(items);
+        } catch (RuntimeException e) {
+            int completed = 0;
+            RuntimeException cause = e;
+            if (e instanceof BatchTemplate.BatchFailedException) {
+                completed = ((BatchTemplate.BatchFailedException) e).getCompleted();
+                cause = ((BatchTemplate.BatchFailedException) e).getCause();
+            }
+            if (!isItemFailure(cause)) {
+                throw cause;
+            }
+            List<T> remainingItems = items.subList(completed, items.size());
+            if (remainingItems.size() == 1) {
+                logger.error("Could not " + description + " " + remainingItems.get(0) + ": " + cause.getMessage(),
+                        cause);
+                failedItems.add(remainingItems.get(0));
+            } else {
+                logger.warn("Could not " + description + " a group of " + remainingItems.size() + " items, " +
+                        "retrying in smaller groups: " + cause.getMessage());
+                int middle = remainingItems.size() / 2;
+                failedItems.addAll(bisect(remainingItems.subList(0, middle), operation, description));
+                failedItems.addAll(bisect(remainingItems.subList(middle, remainingItems.size()), operation,
+                        description));
+            }
+        }
+        return failedItems;
+    }
+
+    /**
+     * Checks whether an exception is caused by the contents or versions an operation was applied to, rather than by
+     * the connection to the content repository.
+     *
+     * @param e the exception
+     * @return true, if applying the operation to fewer items may succeed
+     */
+    private static boolean isItemFailure(RuntimeException e) {
+        if (e instanceof SessionNotOpenException || e instanceof FlushFailedException) {
+            return false;
+        }
+        return e instanceof ContentException || e instanceof PublicationException;
+    }
+
+    /**
+     * Publish a collection of documents. If the publication fails, the collection is bisected to publish all
+     * documents that can be published.
      *
      * @param toBePublishedContent The collection of CoreMedia documents to publish
+     * @return the versions which could not be published
      */
-    private void publish(Collection<Version> toBePublishedContent) {
+    private List<Version> publish(Collection<Version> toBePublishedContent) {
+        return bisect(new ArrayList<>(toBePublishedContent), this::publishAll, "publish");
+    }
+
+    /**
+     * Publish a collection of documents in a single publication set.
+     *
+     * @param toBePublishedContent The collection of CoreMedia documents to publish
+     * @throws PublicationFailedException if the publication set could not be published
+     */
+    private void publishAll(Collection<Version> toBePublishedContent) {
         PublicationService publicationService = contentRepository.getPublicationService();
         PublicationSet publicationSet = publicationService.createPublicationSet(toBePublishedContent);
+        long start = System.nanoTime();
         try {
             publicationService.publish(publicationSet);
+            publishSuccessTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            publishedCounter.increment(toBePublishedContent.size());
         } catch (PublicationFailedException e) {
-            logger.error(MessageFormat.format("Cannot bulk publish places and versions: {0}", e.getMessage()), e);
+            publishFailureTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            logger.error(MessageFormat.format("Cannot bulk publish places and versions: {0}", e.getMessage()));
             PublicationResult publicationResult = e.getPublicationResult();
             for (PublicationResultItem item : publicationResult.getResults()) {
                 if (item.isError()) {
                     logger.error("Publication Error " + item.toString());
                 }
             }
+            throw e;
         }
     }
 
@@ -357,6 +572,88 @@ public class ContentPublishHelper {
     }
 
 
+    /**
+     * Sets the given properties in the given contents. Checkout, property write and checkin of all contents are sent
+     * to the content server in repository batches. If a batch fails, its contents are updated one by one, so that
+     * the failing contents can be determined.
+     * <p>
+     * Once checked in, the prior version of a content can no longer be retrieved via
+     * {@link Content#getCheckedOutVersion()}, but it is still needed to decide whether the update should be approved
+     * and published. The prior versions of the updated contents are therefore recorded in the given map, which holds
+     * the contents of one publication batch: if a content has been updated before in the same batch, the version it
+     * had before the first update is kept.
+     *
+     * @param updates       the new properties, by content
+     * @param priorVersions the map to which the updated contents are added with the versions they had before the update
+     * @return the contents that could not be updated, with the cause of the failure
+     */
+    @NonNull
+    public Map<Content, Exception> updateAll(@NonNull final Map<Content, Map<String, Object>> updates,
+                                             @NonNull Map<Content, Version> priorVersions) {
+        Map<Content, Exception> failures = new LinkedHashMap<>();
+        Map<Content, Version> versionsBeforeUpdate = new HashMap<>();
+        List<Content> writableContents = new ArrayList<>();
+        List<Content> individualContents = new ArrayList<>();
+        for (Content content : updates.keySet()) {
+            if (content.isDestroyed() || (content.isCheckedOut() && !content.isCheckedOutByCurrentSession())) {
+                // would fail the whole batch: update it on its own, which reports the failure with its UAPI exception
+                individualContents.add(content);
+            } else {
+                rememberPriorVersion(content, versionsBeforeUpdate);
+                writableContents.add(content);
+            }
+        }
+
+        try {
+            new BatchTemplate<Content>(contentRepository, BatchTemplate.DEFAULT_BATCH_SIZE, logger) {
+                @Override
+                protected void process(com.coremedia.cap.undoc.content.ContentRepository.Batch batch, Content content) {
+                    if (content.isCheckedIn()) {
+                        batch.checkOut(content);
+                    }
+                    batch.setProperties(content, updates.get(content));
+                    batch.checkIn(content);
+                }
+            }.execute(writableContents);
+        } catch (BatchTemplate.BatchFailedException e) {
+            // the contents of the batches executed before the failure are updated and checked in already
+            List<Content> remainingContents = writableContents.subList(e.getCompleted(), writableContents.size());
+            logger.warn("Batch update of " + remainingContents.size() + " contents failed, updating contents " +
+                    "one by one: " + e.getMessage());
+            individualContents.addAll(remainingContents);
+        }
+
+        for (Content content : individualContents) {
+            try {
+                rememberPriorVersion(content, versionsBeforeUpdate);
+                updateProperties(content, updates.get(content));
+                checkInContent(content);
+            } catch (Exception contentException) {
+                failures.put(content, contentException);
+            }
+        }
+
+        for (Content content : updates.keySet()) {
+            if (!failures.containsKey(content)) {
+                priorVersions.putIfAbsent(content, versionsBeforeUpdate.get(content));
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Remembers the version a content has before it is updated, as it is replaced by the checkin.
+     *
+     * @param content       the content to update
+     * @param priorVersions the versions of the contents before the update
+     */
+    private static void rememberPriorVersion(Content content, Map<Content, Version> priorVersions) {
+        Version priorVersion = content.isCheckedOut() ? content.getCheckedOutVersion() : content.getCheckedInVersion();
+        if (priorVersion != null) {
+            priorVersions.putIfAbsent(content, priorVersion);
+        }
+    }
+
     public List<String> getInvalidFileNames() {
         return invalidFileNames;
     }
@@ -0,0 +1,121 @@
+package com.coremedia.csv.importer;
+
+import com.coremedia.blueprint.common.contentbeans.CMLinkable;
+import com.coremedia.cap.common.CapPropertyDescriptor;
+import com.coremedia.cap.common.CapPropertyDescriptorType;
+import com.coremedia.cap.content.ContentType;
+
+import static com.coremedia.csv.common.CSVConstants.PROPERTY_LOCAL_SETTINGS;
+import static com.coremedia.csv.common.CSVConstants.PROPERTY_PREFIX_PICTURES;
+import static com.vfcorp.csv.common.VfCsvConstants.PROPERTY_CUSTOM_CANONICAL;
+
+/**
+ * The conversion of the columns of a CSV file into the properties of one content type, compiled once per
+ * {@link ImportColumnPlan} and content type. It holds the resolved descriptor type of each column, so that converting
+ * a record does not need to look up property descriptors.
+ * <p>
+ * Columns of the main picture, e.g. {@code pictures.alt}, are resolved to the property of the picture, so that the
+ * plan compiled for the type of a picture converts the picture columns of a record.
+ */
+public class ContentTypeConversionPlan {
+
+    /**
+     * The content type the plan has been compiled for.
+     */
+    private final ContentType contentType;
+
+    /**
+     * The descriptor type of the target property of each column of the column plan, null if the content type has no
+     * such property.
+     */
+    private final CapPropertyDescriptorType[] propertyTypes;
+
+    /**
+     * If contents of the type have local settings.
+     */
+    private final boolean hasLocalSettings;
+
+    /**
+     * Constructor.
+     *
+     * @param columnPlan  the mapping of the CSV columns to content properties
+     * @param contentType the content type to compile the plan for
+     */
+    public ContentTypeConversionPlan(ImportColumnPlan columnPlan, ContentType contentType) {
+        this.contentType = contentType;
+        propertyTypes = new CapPropertyDescriptorType[columnPlan.getPropertyCount()];
+        for (int i = 0; i < propertyTypes.length; i++) {
+            String propertyName = columnPlan.getPropertyName(i);
+            if (isPictureProperty(propertyName)) {
+                propertyName = getPicturePropertyName(propertyName);
+            }
+            propertyName = getTargetPropertyName(propertyName);
+            CapPropertyDescriptor descriptor = contentType.getDescriptor(propertyName);
+            propertyTypes[i] = descriptor != null ? descriptor.getType() : null;
+        }
+        // Some content types do not have local settings, getStruct would throw an exception for their contents
+        hasLocalSettings = contentType.isSubtypeOf(CMLinkable.NAME);
+    }
+
+    /**
+     * Gets the name of the content property a mapped property is written to.
+     *
+     * @param propertyName the name of the property as mapped in the template
+     * @return the name of the content property
+     */
+    public static String getTargetPropertyName(String propertyName) {
+        if (propertyName.equals(PROPERTY_CUSTOM_CANONICAL)) { //VFC_ADAPT
+            return PROPERTY_LOCAL_SETTINGS;                     //VFC_ADAPT
+        }                                                       //VFC_ADAPT
+        return propertyName;
+    }
+
+    /**
+     * Checks whether a mapped property is a property of the main picture of the content.
+     *
+     * @param propertyName the name of the property as mapped in the template
+     * @return true if the property is a picture property, in the form "pictures.PICTURE_PROPERTY". Else, false.
+     */
+    public static boolean isPictureProperty(String propertyName) {
+        return propertyName.contains(PROPERTY_PREFIX_PICTURES);
+    }
+
+    /**
+     * Gets the name of the picture property a mapped picture property refers to.
+     *
+     * @param propertyName the name of the picture property as mapped in the template, in the form
+     *                     "pictures.PICTURE_PROPERTY"
+     * @return the name of the property of the picture
+     */
+    public static String getPicturePropertyName(String propertyName) {
+        return propertyName.substring(propertyName.indexOf(".") + 1);
+    }
+
+    /**
+     * Gets the content type the plan has been compiled for.
+     *
+     * @return the content type
+     */
+    public ContentType getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Gets the descriptor type of the target property of a column.
+     *
+     * @param index the index of the property in the column plan
+     * @return the descriptor type, or null if the content type has no such property
+     */
+    public CapPropertyDescriptorType getPropertyType(int index) {
+        return propertyTypes[index];
+    }
+
+    /**
+     * Checks whether contents of the type have local settings.
+     *
+     * @return true if the contents have local settings. Else, false.
+     */
+    public boolean hasLocalSettings() {
+        return hasLocalSettings;
+    }
+}
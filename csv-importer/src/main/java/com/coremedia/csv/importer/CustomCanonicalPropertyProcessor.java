@@ -9,16 +9,30 @@ import com.coremedia.cap.struct.Struct;
 import com.coremedia.cap.struct.StructBuilder;
 import com.coremedia.cap.struct.StructService;
 import com.vfcorp.csv.common.VfCsvConstants;
-import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.coremedia.csv.common.CSVConstants.PROPERTY_LOCAL_SETTINGS;
 import static com.vfcorp.csv.common.VfCsvConstants.CUSTOM_CANONICAL;
@@ -32,6 +46,12 @@ import static com.vfcorp.csv.common.VfCsvConstants.CUSTOM_CANONICAL;
  * </ul>
  * during CSV Imports.
  * <p>
+ * The paths of a read-ahead window are resolved in one request in {@link #prefetch}. Resolved paths, including paths
+ * which could not be resolved, are cached until the end of the import, see {@link #importFinished}, so that changed
+ * navigations are picked up by the next import. If the processor is shared by concurrent imports, the end of one
+ * import clears the cache for all of them, the others then resolve their paths again. All processors share one
+ * pooled HTTP client.
+ * <p>
  * Sample:
  * <Struct xmlns="http://www.coremedia.com/2008/struct" xmlns:xlink="http://www.w3.org/1999/xlink">
  *   <StringProperty Name="headerVisibility">hidden</StringProperty>
@@ -42,6 +62,27 @@ import static com.vfcorp.csv.common.VfCsvConstants.CUSTOM_CANONICAL;
  * @author Markus Schwarz
  */
 public class CustomCanonicalPropertyProcessor implements PropertyValueObjectProcessor {
+
+    /**
+     * The maximum number of paths resolved in one request.
+     */
+    private static final int MAX_PATHS_PER_REQUEST = 500;
+
+    /**
+     * Cached value of paths which could not be resolved.
+     */
+    private static final String NOT_FOUND = "";
+
+    /**
+     * The HTTP client used by all processors, backed by a connection pool.
+     */
+    private static final CloseableHttpClient HTTP_CLIENT = createHttpClient();
+
+    /**
+     * The navigation ids of the paths resolved so far in the current import, by path.
+     */
+    private final Map<String, String> navigationIds = new ConcurrentHashMap<>();
+
     private final StructService structService;
     private final ContentType cmLinkableType;
     private final ContentRepository contentRepository;
@@ -111,18 +152,98 @@ public class CustomCanonicalPropertyProcessor implements PropertyValueObjectProc
         return localSettings;
     }
 
+    /**
+     * Resolves the paths of a read-ahead window which have not been resolved yet, in as few requests as possible.
+     *
+     * @param propertyName         Name of property
+     * @param propertyValueObjects The paths of the window
+     */
+    @Override
+    public void prefetch(String propertyName, Collection<Object> propertyValueObjects) {
+        if (previewRestUrlPrefix == null) {
+            return;
+        }
+        Set<String> uriPaths = new LinkedHashSet<>();
+        for (Object propertyValueObject : propertyValueObjects) {
+            String uriPath = propertyValueObject.toString();
+            if (!navigationIds.containsKey(uriPath)) {
+                uriPaths.add(uriPath);
+            }
+        }
+        List<String> batch = new ArrayList<>(Math.min(uriPaths.size(), MAX_PATHS_PER_REQUEST));
+        for (String uriPath : uriPaths) {
+            batch.add(uriPath);
+            if (batch.size() == MAX_PATHS_PER_REQUEST) {
+                resolveNavigationIDs(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            resolveNavigationIDs(batch);
+        }
+    }
+
+    /**
+     * Forgets the resolved paths, they may be outdated by the next import.
+     */
+    @Override
+    public void importFinished() {
+        navigationIds.clear();
+    }
+
+    private void resolveNavigationIDs(List<String> uriPaths) {
+        HttpPost httpPost = new HttpPost(previewRestUrlPrefix + VfCsvConstants.GET_NAVIGATIONS_FOR_URI_PATHS);
+        List<NameValuePair> parameters = new ArrayList<>(uriPaths.size());
+        for (String uriPath : uriPaths) {
+            parameters.add(new BasicNameValuePair(VfCsvConstants.URI_PATH_PARAMETER, uriPath));
+        }
+        httpPost.setEntity(new UrlEncodedFormEntity(parameters, StandardCharsets.UTF_8));
+        try (CloseableHttpResponse response = HTTP_CLIENT.execute(httpPost)) {
+            String body = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+            if (HttpStatus.SC_OK != response.getStatusLine().getStatusCode()) {
+                // the paths will be resolved one by one
+                logger.warn("Could not resolve navigations in batch, status {}", response.getStatusLine());
+                return;
+            }
+            Map<String, String> resolved = new HashMap<>();
+            for (String line : body.split("\n")) {
+                int separator = line.lastIndexOf('\t');
+                if (separator > 0) {
+                    resolved.put(line.substring(0, separator), line.substring(separator + 1).trim());
+                }
+            }
+            for (String uriPath : uriPaths) {
+                navigationIds.put(uriPath, resolved.getOrDefault(uriPath, NOT_FOUND));
+            }
+        } catch (IOException e) {
+            logger.warn("Error resolving navigations in batch", e);
+        }
+    }
+
     private String getNavigationID(Object propertyValueObject) {
+        String uriPath = propertyValueObject.toString();
+        String navigationID = navigationIds.get(uriPath);
+        if (navigationID != null) {
+            return navigationID.equals(NOT_FOUND) ? null : navigationID;
+        }
         if (previewRestUrlPrefix != null) {
             HttpGet httpGet = null;
             try {
-                CloseableHttpClient client = HttpClients.createDefault();
                 String requestUrl = previewRestUrlPrefix + VfCsvConstants.GET_NAVIGATION_FOR_URI_PATH;
                 URIBuilder builder = new URIBuilder(requestUrl);
-                builder.setParameter("uriPath", propertyValueObject.toString());
+                builder.setParameter(VfCsvConstants.URI_PATH_PARAMETER, uriPath);
                 httpGet = new HttpGet(builder.build());
-                HttpResponse response = client.execute(httpGet);
-                if (HttpStatus.SC_OK == response.getStatusLine().getStatusCode()) {
-                    return EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+                try (CloseableHttpResponse response = HTTP_CLIENT.execute(httpGet)) {
+                    int status = response.getStatusLine().getStatusCode();
+                    if (HttpStatus.SC_OK == status) {
+                        navigationID = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+                        navigationIds.put(uriPath, navigationID);
+                        return navigationID;
+                    }
+                    EntityUtils.consume(response.getEntity());
+                    if (HttpStatus.SC_NOT_FOUND == status) {
+                        navigationIds.put(uriPath, NOT_FOUND);
+                    }
                 }
             } catch (Exception e) {
                 logger.error("Error resolving navigation", e);
@@ -132,4 +253,11 @@ public class CustomCanonicalPropertyProcessor implements PropertyValueObjectProc
         }
         return null;
     }
+
+    private static CloseableHttpClient createHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(20);
+        connectionManager.setDefaultMaxPerRoute(10);
+        return HttpClients.custom().setConnectionManager(connectionManager).build();
+    }
 }
@@ -0,0 +1,201 @@
+package com.coremedia.csv.importer;
+
+import com.coremedia.cap.content.ContentType;
+import com.coremedia.csv.common.CSVFingerprint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.coremedia.csv.common.CSVConstants.COLUMN_FINGERPRINT;
+import static com.coremedia.csv.common.CSVConstants.COLUMN_ID;
+import static com.coremedia.csv.common.CSVConstants.COLUMN_TYPE;
+
+/**
+ * The mapping of the columns of a CSV file to content properties, resolved once per file from its header. Records are
+ * read by column index, so that no per-record maps of headers and values need to be built.
+ */
+public class ImportColumnPlan {
+
+    /**
+     * Column index of columns which do not exist in the CSV file.
+     */
+    private static final int MISSING = -1;
+
+    /**
+     * The names of the content properties to import, in column order.
+     */
+    private final String[] propertyNames;
+
+    /**
+     * The column index of each content property in {@link #propertyNames}.
+     */
+    private final int[] propertyColumns;
+
+    /**
+     * The column indexes of all CSV headers.
+     */
+    private final Map<String, Integer> headerMap;
+
+    private final int idColumn;
+    private final int typeColumn;
+    private final int fingerprintColumn;
+
+    /**
+     * The column indexes of the values which are part of the fingerprint, in column order.
+     */
+    private final int[] fingerprintedColumns;
+
+    /**
+     * The conversion plans compiled so far, by content type.
+     */
+    private final Map<ContentType, ContentTypeConversionPlan> conversionPlans = new HashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param headerMap                        the column indexes of the CSV headers, as returned by
+     *                                         {@link org.apache.commons.csv.CSVParser#getHeaderMap()}
+     * @param reportHeadersToContentProperties the map of all possible CSV headers and the properties mapped to into
+     *                                         the content
+     */
+    public ImportColumnPlan(Map<String, Integer> headerMap, Map<String, String> reportHeadersToContentProperties) {
+        this.headerMap = headerMap;
+
+        // If several headers are mapped to the same property, the last one wins
+        Map<String, Integer> columnsByProperty = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : reportHeadersToContentProperties.entrySet()) {
+            Integer column = headerMap.get(entry.getKey());
+            if (column != null) {
+                columnsByProperty.put(entry.getValue(), column);
+            }
+        }
+        List<Map.Entry<String, Integer>> properties = new ArrayList<>(columnsByProperty.entrySet());
+        properties.sort(Map.Entry.comparingByValue());
+        propertyNames = new String[properties.size()];
+        propertyColumns = new int[properties.size()];
+        for (int i = 0; i < properties.size(); i++) {
+            propertyNames[i] = properties.get(i).getKey();
+            propertyColumns[i] = properties.get(i).getValue();
+        }
+
+        idColumn = columnOf(COLUMN_ID);
+        typeColumn = columnOf(COLUMN_TYPE);
+        fingerprintColumn = columnOf(COLUMN_FINGERPRINT);
+        int[] fingerprinted = new int[headerMap.size()];
+        int count = 0;
+        for (Map.Entry<String, Integer> entry : headerMap.entrySet()) {
+            if (CSVFingerprint.isFingerprinted(entry.getKey())) {
+                fingerprinted[count++] = entry.getValue();
+            }
+        }
+        fingerprintedColumns = Arrays.copyOf(fingerprinted, count);
+        Arrays.sort(fingerprintedColumns);
+    }
+
+    /**
+     * Gets the number of content properties contained in the CSV file.
+     *
+     * @return the number of properties
+     */
+    public int getPropertyCount() {
+        return propertyNames.length;
+    }
+
+    /**
+     * Gets the name of a content property.
+     *
+     * @param index the index of the property, between 0 and {@link #getPropertyCount()}
+     * @return the name of the property
+     */
+    public String getPropertyName(int index) {
+        return propertyNames[index];
+    }
+
+    /**
+     * Gets the value of a content property from a CSV record.
+     *
+     * @param record the CSV record
+     * @param index  the index of the property, between 0 and {@link #getPropertyCount()}
+     * @return the value, or null if the record has no value for the property
+     */
+    public String getPropertyValue(ImportRecord record, int index) {
+        return valueOf(record, propertyColumns[index]);
+    }
+
+    /**
+     * Gets the content id of a CSV record.
+     *
+     * @param record the CSV record
+     * @return the content id, or null if the record has no id
+     */
+    public String getId(ImportRecord record) {
+        return valueOf(record, idColumn);
+    }
+
+    /**
+     * Gets the content type name of a CSV record.
+     *
+     * @param record the CSV record
+     * @return the name of the content type, or null if the record has no type
+     */
+    public String getType(ImportRecord record) {
+        return valueOf(record, typeColumn);
+    }
+
+    /**
+     * Gets the fingerprint of a CSV record.
+     *
+     * @param record the CSV record
+     * @return the fingerprint, or null if the record has no fingerprint
+     */
+    public String getFingerprint(ImportRecord record) {
+        return valueOf(record, fingerprintColumn);
+    }
+
+    /**
+     * Gets the values of a CSV record which are part of its fingerprint.
+     *
+     * @param record the CSV record
+     * @return the values, in column order
+     */
+    public List<String> getFingerprintedValues(ImportRecord record) {
+        List<String> values = new ArrayList<>(fingerprintedColumns.length);
+        for (int column : fingerprintedColumns) {
+            values.add(valueOf(record, column));
+        }
+        return values;
+    }
+
+    /**
+     * Gets the conversion of the columns into the properties of a content type. The plan is compiled on first use.
+     *
+     * @param contentType the content type
+     * @return the conversion plan
+     */
+    public synchronized ContentTypeConversionPlan getConversionPlan(ContentType contentType) {
+        return conversionPlans.computeIfAbsent(contentType, type -> new ContentTypeConversionPlan(this, type));
+    }
+
+    /**
+     * Checks whether the CSV file contains a column.
+     *
+     * @param header the header of the column
+     * @return true if the column exists. Else, false.
+     */
+    public boolean hasColumn(String header) {
+        return headerMap.containsKey(header);
+    }
+
+    private int columnOf(String header) {
+        Integer column = headerMap.get(header);
+        return column != null ? column : MISSING;
+    }
+
+    private static String valueOf(ImportRecord record, int column) {
+        return column == MISSING || column >= record.size() ? null : record.get(column);
+    }
+}
@@ -0,0 +1,322 @@
+package com.coremedia.csv.importer;
+
+import com.coremedia.cap.content.Content;
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Local journal of the progress of a CSV import, which allows an interrupted import to be resumed.
+ * <p>
+ * The journal is a text file with one entry per line, which is appended and synced to disk as the import proceeds:
+ * <ul>
+ * <li>{@code F <length> <last modified>} identifies the source CSV file the journal belongs to.</li>
+ * <li>{@code W <first record> <character position> <last record> <ids>} is written after a window of records has
+ * been written to the repository. It contains the number and character position of the first record of the window,
+ * the number of its last record and the ids of the written contents.</li>
+ * <li>{@code P <ids>} is written after a batch of contents has been approved/published.</li>
+ * </ul>
+ * An entry which has been cut off by a crash is ignored when the journal is loaded.
+ */
+public class ImportJournal {
+
+    /**
+     * The suffix appended to the path of the source CSV file to get the default path of its journal.
+     */
+    public static final String FILE_SUFFIX = ".journal";
+
+    private static final String SOURCE_ENTRY = "F";
+    private static final String WINDOW_ENTRY = "W";
+    private static final String PUBLICATION_ENTRY = "P";
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final String ID_SEPARATOR = ",";
+
+    /**
+     * The journal file.
+     */
+    private final File file;
+
+    /**
+     * The logger from the tool using this journal.
+     */
+    private final Logger logger;
+
+    /**
+     * The length and modification time of the source CSV file, as recorded in the journal.
+     */
+    private String sourceFingerprint;
+
+    /**
+     * The number of the first record of the last committed window. Zero if no window has been committed.
+     */
+    private long checkpointRecordNumber;
+
+    /**
+     * The character position of the first record of the last committed window.
+     */
+    private long checkpointCharacterPosition;
+
+    /**
+     * The number of the last committed record. Zero if no window has been committed.
+     */
+    private long committedRecordNumber;
+
+    /**
+     * The ids of the contents which have been written, but not yet approved/published.
+     */
+    private final Set<String> unpublishedIds = new LinkedHashSet<>();
+
+    /**
+     * The writer appending to the journal file, or null if the journal is not open.
+     */
+    private Writer writer;
+
+    /**
+     * The stream underlying the writer, used to sync the journal to disk.
+     */
+    private FileOutputStream outputStream;
+
+    /**
+     * Constructor.
+     *
+     * @param file   the journal file
+     * @param logger logger from the tool using this journal
+     */
+    public ImportJournal(File file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+    }
+
+    /**
+     * Gets the default journal file of a source CSV file.
+     *
+     * @param sourceCSV the source CSV file
+     * @return the journal file next to the source CSV file
+     */
+    public static File getDefaultFile(File sourceCSV) {
+        return new File(sourceCSV.getPath() + FILE_SUFFIX);
+    }
+
+    /**
+     * Loads the entries of an existing journal file, so that the import can be resumed.
+     *
+     * @param sourceCSV the source CSV file to be imported
+     * @throws IOException if the journal file cannot be read, or if it belongs to a different version of the source
+     *                     CSV file
+     */
+    public void load(File sourceCSV) throws IOException {
+        if (!file.isFile()) {
+            logger.info("No import journal found at " + file.getPath() + ", starting from the beginning.");
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file),
+                StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    loadEntry(line.split(FIELD_SEPARATOR, -1));
+                } catch (RuntimeException e) {
+                    logger.warn("Ignoring incomplete entry in import journal " + file.getPath() + ": " + line);
+                }
+            }
+        }
+        if (sourceFingerprint != null && !sourceFingerprint.equals(fingerprintOf(sourceCSV))) {
+            throw new IOException("The import journal " + file.getPath() + " belongs to a different version of " +
+                    sourceCSV.getPath());
+        }
+        if (hasCheckpoint()) {
+            logger.info("Resuming import after record " + committedRecordNumber + ", " + unpublishedIds.size() +
+                    " documents are still to be approved/published.");
+        }
+    }
+
+    private void loadEntry(String[] fields) {
+        switch (fields[0]) {
+            case SOURCE_ENTRY:
+                sourceFingerprint = fields[1] + FIELD_SEPARATOR + fields[2];
+                break;
+            case WINDOW_ENTRY:
+                long recordNumber = Long.parseLong(fields[1]);
+                long characterPosition = Long.parseLong(fields[2]);
+                long lastRecordNumber = Long.parseLong(fields[3]);
+                unpublishedIds.addAll(splitIds(fields[4]));
+                checkpointRecordNumber = recordNumber;
+                checkpointCharacterPosition = characterPosition;
+                committedRecordNumber = lastRecordNumber;
+                break;
+            case PUBLICATION_ENTRY:
+                unpublishedIds.removeAll(splitIds(fields[1]));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown entry " + fields[0]);
+        }
+    }
+
+    /**
+     * Opens the journal for writing.
+     *
+     * @param sourceCSV the source CSV file to be imported
+     * @param resume    true to append to the loaded journal, false to start a new journal
+     * @throws IOException if the journal file cannot be written
+     */
+    public void open(File sourceCSV, boolean resume) throws IOException {
+        boolean append = resume && sourceFingerprint != null;
+        outputStream = new FileOutputStream(file, append);
+        writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        if (!append) {
+            sourceFingerprint = fingerprintOf(sourceCSV);
+            append(SOURCE_ENTRY + FIELD_SEPARATOR + sourceFingerprint);
+        }
+    }
+
+    /**
+     * Records that a window of records has been written to the repository.
+     *
+     * @param firstRecordNumber            the number of the first record of the window
+     * @param firstRecordCharacterPosition the character position of the first record of the window
+     * @param lastRecordNumber             the number of the last record of the window
+     * @param writtenContents              the contents which have been written
+     */
+    public synchronized void windowCommitted(long firstRecordNumber, long firstRecordCharacterPosition,
+                                             long lastRecordNumber, Collection<Content> writtenContents) {
+        append(WINDOW_ENTRY + FIELD_SEPARATOR + firstRecordNumber + FIELD_SEPARATOR + firstRecordCharacterPosition +
+                FIELD_SEPARATOR + lastRecordNumber + FIELD_SEPARATOR + joinIds(writtenContents));
+    }
+
+    /**
+     * Records that a batch of contents has been approved/published.
+     *
+     * @param publishedContents the contents which have been approved/published
+     */
+    public synchronized void published(Collection<Content> publishedContents) {
+        append(PUBLICATION_ENTRY + FIELD_SEPARATOR + joinIds(publishedContents));
+    }
+
+    /**
+     * Closes the journal.
+     */
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the import journal " + file.getPath(), e);
+            }
+            writer = null;
+            outputStream = null;
+        }
+    }
+
+    /**
+     * Closes and deletes the journal, once the import has been completed.
+     */
+    public void delete() {
+        close();
+        if (file.exists() && !file.delete()) {
+            logger.warn("Could not delete the import journal " + file.getPath());
+        }
+    }
+
+    /**
+     * Checks whether the loaded journal contains a committed window, from which the import can be resumed.
+     *
+     * @return true if the import can be resumed. Else, false.
+     */
+    public boolean hasCheckpoint() {
+        return committedRecordNumber > 0;
+    }
+
+    /**
+     * Gets the number of the first record of the last committed window.
+     *
+     * @return the record number
+     */
+    public long getCheckpointRecordNumber() {
+        return checkpointRecordNumber;
+    }
+
+    /**
+     * Gets the character position of the first record of the last committed window.
+     *
+     * @return the character position, counted from the start of the source CSV file
+     */
+    public long getCheckpointCharacterPosition() {
+        return checkpointCharacterPosition;
+    }
+
+    /**
+     * Gets the number of the last committed record. All records up to this number can be skipped.
+     *
+     * @return the record number, zero if no window has been committed
+     */
+    public long getCommittedRecordNumber() {
+        return committedRecordNumber;
+    }
+
+    /**
+     * Gets the ids of the contents which have been written, but not yet approved/published.
+     *
+     * @return the content ids
+     */
+    public Set<String> getUnpublishedIds() {
+        return unpublishedIds;
+    }
+
+    /**
+     * Appends an entry to the journal and syncs it to disk.
+     *
+     * @param entry the entry
+     */
+    private void append(String entry) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(entry);
+            writer.write('\n');
+            writer.flush();
+            outputStream.getFD().sync();
+        } catch (IOException e) {
+            // the import itself is not affected, it merely cannot be resumed from this point
+            logger.warn("Could not write to the import journal " + file.getPath(), e);
+        }
+    }
+
+    private static String fingerprintOf(File sourceCSV) {
+        return sourceCSV.length() + FIELD_SEPARATOR + sourceCSV.lastModified();
+    }
+
+    private static String joinIds(Collection<Content> contents) {
+        StringBuilder builder = new StringBuilder();
+        for (Content content : contents) {
+            if (builder.length() > 0) {
+                builder.append(ID_SEPARATOR);
+            }
+            builder.append(content.getId());
+        }
+        return builder.toString();
+    }
+
+    private static List<String> splitIds(String ids) {
+        List<String> result = new ArrayList<>();
+        for (String id : ids.split(ID_SEPARATOR)) {
+            if (!id.isEmpty()) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+}
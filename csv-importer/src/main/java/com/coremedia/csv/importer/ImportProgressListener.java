@@ -0,0 +1,40 @@
+package com.coremedia.csv.importer;
+
+/**
+ * Receives the outcome of each CSV record processed by the {@link CSVParserHelper}, e.g. to report the progress of an
+ * import while it is running.
+ * <p>
+ * The outcome of records whose updates are written in repository batches is reported once the batch has been written,
+ * so records are not necessarily reported in the order in which they were parsed. Implementations may be called from
+ * different threads.
+ */
+public interface ImportProgressListener {
+
+    /**
+     * The outcome of a CSV record.
+     */
+    enum Outcome {
+        /**
+         * The content of the record has been updated.
+         */
+        WRITTEN,
+        /**
+         * The record did not contain any changes, so the content has not been updated.
+         */
+        UNCHANGED,
+        /**
+         * The record could not be imported.
+         */
+        FAILED
+    }
+
+    /**
+     * Called when a CSV record has been processed.
+     *
+     * @param recordNumber the number of the record in the CSV file, starting at 1
+     * @param contentId    the content id given in the record, may be null or invalid for failed records
+     * @param outcome      the outcome of the record
+     * @param message      a description of the outcome, may be null
+     */
+    void recordProcessed(long recordNumber, String contentId, Outcome outcome, String message);
+}
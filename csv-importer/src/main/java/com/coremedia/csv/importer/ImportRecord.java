@@ -0,0 +1,95 @@
+package com.coremedia.csv.importer;
+
+import org.apache.commons.csv.CSVRecord;
+
+import java.util.Iterator;
+
+/**
+ * A record of a CSV file to import, read by column index. Records are either parsed by commons-csv or tokenized by
+ * the {@link CSVTokenizer}, whose records keep their values in the buffer they have been read into and only create
+ * strings for the values which are actually read.
+ */
+public interface ImportRecord {
+
+    /**
+     * Gets the number of the record in the CSV file.
+     *
+     * @return the record number
+     */
+    long getRecordNumber();
+
+    /**
+     * Gets the position of the first character of the record in the CSV file.
+     *
+     * @return the character position
+     */
+    long getCharacterPosition();
+
+    /**
+     * Gets the number of values of the record.
+     *
+     * @return the number of values
+     */
+    int size();
+
+    /**
+     * Gets a value of the record.
+     *
+     * @param column the index of the column, between 0 and {@link #size()}
+     * @return the value
+     */
+    String get(int column);
+
+    /**
+     * Adapts a record parsed by commons-csv.
+     *
+     * @param record the parsed record
+     * @return the import record
+     */
+    static ImportRecord of(CSVRecord record) {
+        return new ImportRecord() {
+            @Override
+            public long getRecordNumber() {
+                return record.getRecordNumber();
+            }
+
+            @Override
+            public long getCharacterPosition() {
+                return record.getCharacterPosition();
+            }
+
+            @Override
+            public int size() {
+                return record.size();
+            }
+
+            @Override
+            public String get(int column) {
+                return record.get(column);
+            }
+        };
+    }
+
+    /**
+     * Adapts the records parsed by commons-csv, e.g. by a {@link org.apache.commons.csv.CSVParser}.
+     *
+     * @param records the parsed records
+     * @return the import records
+     */
+    static Iterable<ImportRecord> ofAll(Iterable<CSVRecord> records) {
+        return () -> {
+            Iterator<CSVRecord> iterator = records.iterator();
+            return new Iterator<ImportRecord>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public ImportRecord next() {
+                    return of(iterator.next());
+                }
+            };
+        };
+    }
+}
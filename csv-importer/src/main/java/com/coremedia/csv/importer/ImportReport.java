@@ -0,0 +1,142 @@
+package com.coremedia.csv.importer;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Local CSV file with the outcome of each record of an import, with the columns Record, Id, Outcome and Message. The
+ * reports of the shards of an import can be merged into one report.
+ */
+public class ImportReport implements ImportProgressListener, Closeable {
+
+    /**
+     * The suffix appended to the path of the source CSV file to get the default path of its report.
+     */
+    public static final String FILE_SUFFIX = ".report.csv";
+
+    /**
+     * The headers of the report CSV.
+     */
+    private static final String[] HEADERS = {"Record", "Id", "Outcome", "Message"};
+
+    private final File file;
+    private final Logger logger;
+    private final CSVPrinter printer;
+
+    /**
+     * The number of records per outcome.
+     */
+    private final Map<Outcome, Long> counts = new EnumMap<>(Outcome.class);
+
+    /**
+     * Constructor. Opens the report file for writing.
+     *
+     * @param file   the report file
+     * @param append true to append to an existing report, e.g. when an import is resumed. Else, the file is replaced.
+     * @param logger logger from the tool using this report
+     * @throws IOException if the file cannot be written
+     */
+    public ImportReport(File file, boolean append, Logger logger) throws IOException {
+        this.file = file;
+        this.logger = logger;
+        boolean writeHeader = !append || !file.isFile() || file.length() == 0;
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file, append), StandardCharsets.UTF_8);
+        printer = new CSVPrinter(writer, writeHeader ? CSVFormat.EXCEL.withHeader(HEADERS) : CSVFormat.EXCEL);
+    }
+
+    /**
+     * Gets the default report file of a source CSV file.
+     *
+     * @param sourceCSV the source CSV file
+     * @return the report file next to the source CSV file
+     */
+    public static File getDefaultFile(File sourceCSV) {
+        return new File(sourceCSV.getPath() + FILE_SUFFIX);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void recordProcessed(long recordNumber, String contentId, Outcome outcome, String message) {
+        counts.merge(outcome, 1L, Long::sum);
+        try {
+            printer.printRecord(recordNumber, contentId, outcome, message);
+        } catch (IOException e) {
+            // the import itself is not affected
+            logger.warn("Could not write to the import report " + file.getPath(), e);
+        }
+    }
+
+    /**
+     * Gets the number of records reported with an outcome.
+     *
+     * @param outcome the outcome
+     * @return the number of records
+     */
+    public synchronized long getCount(Outcome outcome) {
+        return counts.getOrDefault(outcome, 0L);
+    }
+
+    /**
+     * Closes the report file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        printer.close();
+    }
+
+    /**
+     * Merges the reports of several shards of an import into one report, ordered by record number. If a record has
+     * been reported more than once, e.g. by a resumed import, its last outcome is kept.
+     *
+     * @param reports the reports to merge, missing files are skipped
+     * @param target  the merged report file
+     * @param logger  logger from the tool merging the reports
+     * @return the number of records per outcome in the merged report
+     * @throws IOException if a report cannot be read or the merged report cannot be written
+     */
+    public static Map<Outcome, Long> merge(List<File> reports, File target, Logger logger) throws IOException {
+        Map<Long, String[]> records = new TreeMap<>();
+        for (File report : reports) {
+            if (!report.isFile()) {
+                logger.warn("The import report " + report.getPath() + " does not exist.");
+                continue;
+            }
+            try (CSVParser parser = new CSVParser(new BufferedReader(new InputStreamReader(
+                    new FileInputStream(report), StandardCharsets.UTF_8)), CSVFormat.EXCEL.withHeader())) {
+                for (CSVRecord record : parser) {
+                    records.put(Long.parseLong(record.get(0)), new String[]{record.get(0), record.get(1),
+                            record.get(2), record.get(3)});
+                }
+            }
+        }
+        Map<Outcome, Long> counts = new EnumMap<>(Outcome.class);
+        try (CSVPrinter printer = new CSVPrinter(new OutputStreamWriter(new FileOutputStream(target),
+                StandardCharsets.UTF_8), CSVFormat.EXCEL.withHeader(HEADERS))) {
+            for (String[] record : records.values()) {
+                counts.merge(Outcome.valueOf(record[2]), 1L, Long::sum);
+                printer.printRecord((Object[]) record);
+            }
+        }
+        return counts;
+    }
+}
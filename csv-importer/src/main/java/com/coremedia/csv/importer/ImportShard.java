@@ -0,0 +1,101 @@
+package com.coremedia.csv.importer;
+
+/**
+ * One of several shards into which the records of a CSV file are split, so that they can be imported by several
+ * processes, each with its own UAPI session. Records are assigned to shards by a hash of their content id, so that
+ * every process reading the same file agrees on the assignment, and all records of a content are imported by the
+ * same process.
+ */
+public class ImportShard {
+
+    private final int index;
+    private final int count;
+
+    /**
+     * Constructor.
+     *
+     * @param index the number of the shard, between 1 and count
+     * @param count the number of shards
+     */
+    public ImportShard(int index, int count) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("The shard must be between 1 and the number of shards, but was " +
+                    index + "/" + count);
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Parses a shard spec of the form {@code <index>/<count>}, e.g. {@code 2/8} for the second of eight shards.
+     *
+     * @param spec the shard spec
+     * @return the shard
+     * @throws IllegalArgumentException if the spec is invalid
+     */
+    public static ImportShard parse(String spec) {
+        int separator = spec.indexOf('/');
+        if (separator < 0) {
+            throw new IllegalArgumentException("The shard must be given as <index>/<count>, but was " + spec);
+        }
+        try {
+            return new ImportShard(Integer.parseInt(spec.substring(0, separator).trim()),
+                    Integer.parseInt(spec.substring(separator + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The shard must be given as <index>/<count>, but was " + spec, e);
+        }
+    }
+
+    /**
+     * Checks whether a record belongs to this shard. Records without an id belong to the first shard, which reports
+     * them as failed.
+     *
+     * @param contentId the content id of the record, may be null
+     * @return true if the record is imported by this shard. Else, false.
+     */
+    public boolean contains(String contentId) {
+        if (contentId == null || contentId.isEmpty()) {
+            return index == 1;
+        }
+        return Math.floorMod(hash(contentId), count) == index - 1;
+    }
+
+    /**
+     * Hashes a content id. Numeric ids are mixed, so that consecutive ids are spread evenly over the shards.
+     */
+    private static long hash(String contentId) {
+        long id;
+        try {
+            id = Long.parseLong(contentId.trim());
+        } catch (NumberFormatException e) {
+            return contentId.hashCode();
+        }
+        // finalizer of the SplitMix64 generator
+        id = (id ^ (id >>> 30)) * 0xbf58476d1ce4e5b9L;
+        id = (id ^ (id >>> 27)) * 0x94d049bb133111ebL;
+        return id ^ (id >>> 31);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the suffix which distinguishes the local files of this shard, e.g. its journal, from those of the other
+     * shards.
+     *
+     * @return the suffix, e.g. {@code .shard-2-of-8}
+     */
+    public String getFileSuffix() {
+        return ".shard-" + index + "-of-" + count;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,266 @@
+package com.coremedia.csv.importer;
+
+/**
+ * Limits the pace of an import, so that a running import does not slow down editing on the content server. Records
+ * and content writes each pass a token bucket, which admits a configured number per second. Both limits are optional.
+ * <p>
+ * If a target latency is configured, the limits adapt to the load of the content server: whenever the average time to
+ * write a document exceeds the target, both rates are halved, and while it stays within the target they are raised
+ * step by step back to the configured limits. An unlimited rate is limited to half of its measured rate when the
+ * import first backs off.
+ * <p>
+ * The throttle is called once per read-ahead window. It may be shared by the imports of several CSV files, which are
+ * then limited together.
+ */
+public class ImportThrottle {
+
+    /**
+     * The factor by which the rates are reduced if the write latency exceeds the target.
+     */
+    private static final double BACKOFF_FACTOR = 0.5;
+
+    /**
+     * The share of the configured (or first backed off) rate by which the rates are raised again per window.
+     */
+    private static final double RECOVERY_SHARE = 0.1;
+
+    /**
+     * The lowest rate to which the import backs off, per second.
+     */
+    private static final double MIN_RATE = 1;
+
+    private final TokenBucket records;
+    private final TokenBucket writes;
+
+    /**
+     * The target average time in milliseconds to write a document, 0 to disable the adaptive backoff.
+     */
+    private final long targetLatency;
+
+    /**
+     * The start of the current measuring interval and the records and writes passed since.
+     */
+    private long intervalStart;
+    private long intervalRecords;
+    private long intervalWrites;
+
+    private volatile double recordRate;
+    private volatile double writeRate;
+    private volatile double writeLatency;
+
+    /**
+     * Constructor.
+     *
+     * @param maxRecordsPerSecond the maximum number of records imported per second, 0 for no limit
+     * @param maxWritesPerSecond  the maximum number of documents written per second, 0 for no limit
+     * @param targetLatency       the target average time in milliseconds to write a document, 0 to disable the
+     *                            adaptive backoff
+     */
+    public ImportThrottle(long maxRecordsPerSecond, long maxWritesPerSecond, long targetLatency) {
+        if (maxRecordsPerSecond < 0 || maxWritesPerSecond < 0 || targetLatency < 0) {
+            throw new IllegalArgumentException("The limits of the import throttle must not be negative, but were " +
+                    maxRecordsPerSecond + ", " + maxWritesPerSecond + " and " + targetLatency);
+        }
+        records = new TokenBucket(maxRecordsPerSecond);
+        writes = new TokenBucket(maxWritesPerSecond);
+        this.targetLatency = targetLatency;
+        intervalStart = System.nanoTime();
+    }
+
+    /**
+     * Waits until records may be imported.
+     *
+     * @param count the number of records
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquireRecords(int count) throws InterruptedException {
+        synchronized (this) {
+            intervalRecords += count;
+        }
+        records.acquire(count);
+    }
+
+    /**
+     * Waits until documents may be written.
+     *
+     * @param count the number of documents
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquireWrites(int count) throws InterruptedException {
+        writes.acquire(count);
+    }
+
+    /**
+     * Called after documents have been written. Measures the current rates and adapts the limits to the latency of
+     * the writes.
+     *
+     * @param count   the number of documents written
+     * @param elapsed the time in milliseconds it took to write them
+     */
+    public synchronized void writesCompleted(int count, long elapsed) {
+        intervalWrites += count;
+        long now = System.nanoTime();
+        double seconds = (now - intervalStart) / 1e9;
+        if (seconds > 0) {
+            recordRate = intervalRecords / seconds;
+            writeRate = intervalWrites / seconds;
+        }
+        intervalStart = now;
+        intervalRecords = 0;
+        intervalWrites = 0;
+        if (count == 0) {
+            return;
+        }
+        writeLatency = (double) elapsed / count;
+        if (targetLatency > 0) {
+            if (writeLatency > targetLatency) {
+                records.backOff(recordRate);
+                writes.backOff(writeRate);
+            } else {
+                records.recover();
+                writes.recover();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of records imported per second, measured over the last read-ahead window.
+     *
+     * @return the current record rate
+     */
+    public double getRecordRate() {
+        return recordRate;
+    }
+
+    /**
+     * Gets the number of documents written per second, measured over the last read-ahead window.
+     *
+     * @return the current write rate
+     */
+    public double getWriteRate() {
+        return writeRate;
+    }
+
+    /**
+     * Gets the average time in milliseconds it took to write a document of the last read-ahead window.
+     *
+     * @return the current write latency
+     */
+    public double getWriteLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * Gets the current limit of records per second, which is lower than the configured limit while backing off.
+     *
+     * @return the limit, or 0 if the records are not limited
+     */
+    public double getRecordLimit() {
+        return records.rate;
+    }
+
+    /**
+     * Gets the current limit of documents written per second, which is lower than the configured limit while backing
+     * off.
+     *
+     * @return the limit, or 0 if the writes are not limited
+     */
+    public double getWriteLimit() {
+        return writes.rate;
+    }
+
+    /**
+     * Describes the current rates and limits, for progress output.
+     *
+     * @return the description
+     */
+    public String describe() {
+        return String.format("%.1f records/s (limit: %s), %.1f writes/s (limit: %s), %.0f ms per write",
+                recordRate, describeLimit(records.rate), writeRate, describeLimit(writes.rate), writeLatency);
+    }
+
+    private static String describeLimit(double rate) {
+        return rate > 0 ? String.format("%.1f", rate) : "none";
+    }
+
+    /**
+     * Admits a number of permits per second. Permits which are not used accumulate for up to a second, so that a
+     * window may pass at once after a pause. A request for more permits than are available takes them in advance and
+     * waits until they have accrued, so that later requests queue up behind it.
+     */
+    private static class TokenBucket {
+
+        /**
+         * The configured rate per second, 0 for no limit.
+         */
+        private final double maxRate;
+
+        /**
+         * The current rate per second, 0 for no limit.
+         */
+        private volatile double rate;
+
+        /**
+         * The amount by which the rate is raised per window while recovering.
+         */
+        private double recoveryStep;
+
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(double maxRate) {
+            this.maxRate = maxRate;
+            this.rate = maxRate;
+            this.recoveryStep = maxRate * RECOVERY_SHARE;
+            this.tokens = maxRate;
+            this.lastRefill = System.nanoTime();
+        }
+
+        void acquire(int count) throws InterruptedException {
+            long wait = reserve(count);
+            if (wait > 0) {
+                Thread.sleep(wait);
+            }
+        }
+
+        /**
+         * Takes permits from the bucket.
+         *
+         * @return the time in milliseconds to wait until the permits are paid back
+         */
+        private synchronized long reserve(int count) {
+            if (rate <= 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            tokens = Math.min(Math.max(rate, 1), tokens + (now - lastRefill) / 1e9 * rate);
+            lastRefill = now;
+            tokens -= count;
+            return tokens < 0 ? (long) Math.ceil(-tokens / rate * 1000) : 0;
+        }
+
+        synchronized void backOff(double measuredRate) {
+            double current = rate;
+            if (current <= 0) {
+                // the rate has not been limited so far, start from the rate the import actually achieved
+                if (measuredRate <= 0) {
+                    return;
+                }
+                current = measuredRate;
+                recoveryStep = Math.max(MIN_RATE, measuredRate * RECOVERY_SHARE);
+                tokens = 0;
+                lastRefill = System.nanoTime();
+            }
+            rate = Math.max(MIN_RATE, current * BACKOFF_FACTOR);
+        }
+
+        synchronized void recover() {
+            if (rate <= 0 || rate == maxRate) {
+                return;
+            }
+            double raised = rate + recoveryStep;
+            // an unlimited rate stays limited, but its limit is raised until it no longer slows the import down
+            rate = maxRate > 0 ? Math.min(maxRate, raised) : raised;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.coremedia.csv.importer;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+
+/**
+ * Marks all application beans of a context as lazy, including the beans of imported configuration files, which are
+ * not affected by the {@code default-lazy-init} attribute of the importing file. A command line run then only creates
+ * the beans it actually looks up, instead of every bean the shared configuration files define.
+ */
+public class LazyInitBeanFactoryPostProcessor implements BeanFactoryPostProcessor {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition beanDefinition = beanFactory.getBeanDefinition(beanName);
+            // infrastructure beans, e.g. other post processors, are created by the context in any case
+            if (beanDefinition.getRole() == BeanDefinition.ROLE_APPLICATION) {
+                beanDefinition.setLazyInit(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.coremedia.csv.importer;
+
+import com.coremedia.cap.struct.Struct;
+import com.coremedia.xml.Markup;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of values parsed from CSV cells, such as {@link Markup} and {@link Struct} values, keyed by the raw
+ * cell value. Bulk edits often put the same rich text or local settings on many records, which then only need to be
+ * parsed once per import. The parsed values are immutable, so they can be shared between contents. When the cache is
+ * full, the least recently used value is evicted.
+ *
+ * @param <T> the type of the parsed values
+ */
+public class ParsedValueCache<T> {
+
+    /**
+     * The default maximum number of cached values.
+     */
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    /**
+     * The parsed values, by raw value, in access order.
+     */
+    private final Map<String, T> values;
+
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the maximum number of cached values, must be positive
+     */
+    public ParsedValueCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive, but was " + capacity);
+        }
+        values = new LinkedHashMap<String, T>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Gets the parsed value of a raw value, parsing it if it is not cached. Values which cannot be parsed are not
+     * cached.
+     *
+     * @param rawValue the raw value
+     * @param parser   the function which parses the raw value
+     * @return the parsed value
+     */
+    public T get(String rawValue, Function<String, T> parser) {
+        synchronized (values) {
+            T value = values.get(rawValue);
+            if (value != null) {
+                hits++;
+                return value;
+            }
+            misses++;
+        }
+        // parse outside of the lock, an exception leaves the cache unchanged
+        T value = parser.apply(rawValue);
+        if (value != null) {
+            synchronized (values) {
+                values.put(rawValue, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Gets the number of values served from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        synchronized (values) {
+            return hits;
+        }
+    }
+
+    /**
+     * Gets the number of values which had to be parsed.
+     *
+     * @return the number of misses
+     */
+    public long getMisses() {
+        synchronized (values) {
+            return misses;
+        }
+    }
+
+    /**
+     * Serializes a Markup or Struct property value the way the CSV exporter writes it: as markup, without line breaks.
+     * A raw value which equals this serialization is unchanged since its export and does not need to be parsed.
+     *
+     * @param property the property value
+     * @return the serialized value, or null if the value is neither Markup nor a Struct
+     */
+    public static String serialize(Object property) {
+        Markup markup = null;
+        if (property instanceof Markup) {
+            markup = (Markup) property;
+        } else if (property instanceof Struct) {
+            markup = ((Struct) property).toMarkup();
+        }
+        if (markup == null) {
+            return null;
+        }
+        String markupString = markup.toString();
+        // the exporter removes line breaks, so that they do not break CSV parsing
+        return markupString.replace("\n", "").replace("\r", "");
+    }
+}
@@ -2,8 +2,24 @@ package com.coremedia.csv.importer;
 
 import com.coremedia.cap.content.Content;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
 /**
  * Interface to manipulate/validate property value object.
+ * <p>
+ * The importer processes the values of a read-ahead window of CSV records at once, by calling
+ * {@link #processBatchAsync} for each processed property. The processors of different properties run concurrently.
+ * Processors which can process many values more efficiently than one by one, e.g. with a single remote call, should
+ * override {@link #processBatch} or {@link #processBatchAsync}. Values for which the batch fails are processed one by
+ * one with {@link #process} when their record is imported.
+ * <p>
+ * Processors are registered by property name, see
+ * {@link CSVParserHelper#setPropertyValueObjectProcessors(java.util.Map)}. At the end of each import,
+ * {@link #importFinished} is called.
  */
 public interface PropertyValueObjectProcessor {
     /**
@@ -15,4 +31,64 @@ public interface PropertyValueObjectProcessor {
      * @return Resulting value
      */
     Object process(Content content, String propertyName, Object propertyValueObject);
+
+    /**
+     * Called once per read-ahead window of CSV records, before {@link #process} is called for the records of the
+     * window. Processors which need to look up data for the values can do so in one batch here.
+     *
+     * @param propertyName         Name of property
+     * @param propertyValueObjects The non-empty values of the property in the records of the window
+     */
+    default void prefetch(String propertyName, Collection<Object> propertyValueObjects) {
+    }
+
+    /**
+     * Processes the values of a property of many contents. By default, the non-blank values are passed to
+     * {@link #prefetch}, then each value is passed to {@link #process}.
+     *
+     * @param propertyName         Name of property
+     * @param contents             The contents for which to process the property
+     * @param propertyValueObjects The values of the property, one per content
+     * @return The resulting values, one per content and in the same order
+     */
+    default List<Object> processBatch(String propertyName, List<Content> contents, List<Object> propertyValueObjects) {
+        List<Object> prefetchedValues = new ArrayList<>(propertyValueObjects.size());
+        for (Object propertyValueObject : propertyValueObjects) {
+            if (!propertyValueObject.toString().trim().isEmpty()) {
+                prefetchedValues.add(propertyValueObject);
+            }
+        }
+        if (!prefetchedValues.isEmpty()) {
+            prefetch(propertyName, prefetchedValues);
+        }
+        List<Object> results = new ArrayList<>(contents.size());
+        for (int i = 0; i < contents.size(); i++) {
+            results.add(process(contents.get(i), propertyName, propertyValueObjects.get(i)));
+        }
+        return results;
+    }
+
+    /**
+     * Processes the values of a property of many contents asynchronously. By default, {@link #processBatch} is run
+     * with the given executor.
+     *
+     * @param propertyName         Name of property
+     * @param contents             The contents for which to process the property
+     * @param propertyValueObjects The values of the property, one per content
+     * @param executor             The executor of the importer, whose threads act on behalf of the importing user
+     * @return The future resulting values, one per content and in the same order
+     */
+    default CompletableFuture<List<Object>> processBatchAsync(String propertyName, List<Content> contents,
+                                                              List<Object> propertyValueObjects, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> processBatch(propertyName, contents, propertyValueObjects),
+                executor);
+    }
+
+    /**
+     * Called once when an import has finished, successfully or not. A processor may be used by many imports, e.g. as
+     * a Spring bean, so processors which keep data for an import, e.g. looked up in {@link #prefetch}, should release
+     * it here.
+     */
+    default void importFinished() {
+    }
 }
@@ -0,0 +1,149 @@
+package com.coremedia.csv.importer;
+
+import com.coremedia.cap.common.CapSession;
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.content.Version;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background stage which applies the previous approved/published state to batches of imported content, so that
+ * parsing and writing of further records can continue while earlier batches are approved and published.
+ * <p>
+ * Batches are processed one after another by a single worker thread. The number of waiting batches is bounded: if the
+ * queue is full, the submitting thread waits until the worker has taken a batch from the queue, which slows down the
+ * import to the pace of the publication while keeping the batches in the order they were submitted. Each batch is
+ * approved and published in the session of the thread which submitted it, so that the rights of the importing user
+ * apply, and by the content helper of the import which submitted it, which knows the versions the contents had before
+ * they were updated. A pipeline may thus be shared by the imports of several CSV files, each submitting batches with
+ * its own content helper and journal.
+ */
+public class PublicationPipeline {
+
+    /**
+     * The default number of batches that may wait for publication.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 2;
+
+    /**
+     * Counter used to name the worker threads.
+     */
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /**
+     * The logger from the tool using this pipeline.
+     */
+    private final Logger logger;
+
+    /**
+     * The executor running the publication of the batches.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Constructor.
+     *
+     * @param queueCapacity the number of batches that may wait for publication
+     * @param logger        logger from the tool using this pipeline
+     */
+    public PublicationPipeline(int queueCapacity, Logger logger) {
+        this.logger = logger;
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "csv-publication-" + THREAD_COUNTER.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> {
+                    // a batch submitted after the pipeline has been drained would be lost
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("The publication pipeline has already been drained.");
+                    }
+                    try {
+                        pool.getQueue().put(runnable);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException("Interrupted while waiting for the publication pipeline.", e);
+                    }
+                });
+    }
+
+    /**
+     * Submits the given contents for approval/publication. The map will be cleared afterwards. The contents are
+     * approved/published in the session which is active on the calling thread. Contents whose state could not be
+     * applied because of a failure of the content repository are put back into the map, to be submitted again.
+     *
+     * @param importedContents the imported contents to approve/publish, with the versions they had before they were
+     *                         updated
+     * @param contentHelper    the helper which imported the contents and approves and publishes them
+     * @param journal          the journal in which the published batch is recorded, may be null
+     */
+    public void submit(Map<Content, Version> importedContents, CSVContentHelper contentHelper, ImportJournal journal) {
+        // the prior versions are taken with the batch, a later update of the same content goes into a later batch
+        final Map<Content, Version> priorVersions;
+        synchronized (importedContents) {
+            if (importedContents.isEmpty()) {
+                return;
+            }
+            priorVersions = new LinkedHashMap<>(importedContents);
+            importedContents.clear();
+        }
+        final List<Content> batch = new ArrayList<>(priorVersions.keySet());
+        logger.debug("Submitting {} documents for publication.", batch.size());
+        CapSession session = contentHelper.getContentRepository().getConnection().getSession();
+        executor.execute(() -> {
+            CapSession previousSession = session.activate();
+            try {
+                Collection<Content> failedContents = contentHelper.applyPreviousState(priorVersions);
+                if (!priorVersions.isEmpty()) {
+                    // the content repository failed before the state of these contents was applied: retry them with
+                    // the next batch, with the versions they had before this batch, which precede any later update
+                    logger.warn("Retrying the approval/publication of {} documents with the next batch.",
+                            priorVersions.size());
+                    importedContents.putAll(priorVersions);
+                }
+                if (journal != null) {
+                    // the failed contents stay unpublished in the journal, so that a resumed import retries them
+                    List<Content> publishedContents = new ArrayList<>(batch);
+                    publishedContents.removeAll(failedContents);
+                    if (!publishedContents.isEmpty()) {
+                        journal.published(publishedContents);
+                    }
+                }
+            } finally {
+                if (previousSession != null) {
+                    previousSession.activate();
+                } else {
+                    session.deactivate();
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits until all submitted batches have been published and stops the worker thread. No more batches may be
+     * submitted afterwards.
+     */
+    public void drain() {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("Waiting for " + (executor.getQueue().size() + 1) + " publication batches to finish...");
+            }
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted while waiting for the publication to finish.");
+            Thread.currentThread().interrupt();
+        }
+    }
+}
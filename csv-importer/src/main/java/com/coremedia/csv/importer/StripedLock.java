@@ -0,0 +1,53 @@
+package com.coremedia.csv.importer;
+
+/**
+ * A fixed-size table of lock objects. Each key is mapped to one of the locks by its hash code, so that all users of the
+ * same key synchronize on the same lock, while the memory used stays constant no matter how many keys are locked.
+ * <p>
+ * Different keys may share a lock. Therefore, while holding one lock of the table, no other lock of the same table
+ * may be acquired by the same thread.
+ */
+public class StripedLock {
+
+    /**
+     * The default number of locks in the table.
+     */
+    public static final int DEFAULT_STRIPES = 64;
+
+    /**
+     * The lock objects. The length is a power of two.
+     */
+    private final Object[] locks;
+
+    /**
+     * Constructor.
+     *
+     * @param stripes the minimum number of locks in the table, rounded up to the next power of two
+     */
+    public StripedLock(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be positive, but was " + stripes);
+        }
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) {
+            size <<= 1;
+        }
+        locks = new Object[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Gets the lock object for the given key.
+     *
+     * @param key the key to lock, e.g. a content id
+     * @return the lock object on which to synchronize for the given key
+     */
+    public Object getLock(String key) {
+        int hash = key.hashCode();
+        // spread the higher bits, as only the lower bits select the stripe
+        hash ^= (hash >>> 16);
+        return locks[hash & (locks.length - 1)];
+    }
+}
@@ -0,0 +1,326 @@
+package com.coremedia.csv.importer;
+
+import com.coremedia.cap.content.Content;
+import com.coremedia.cap.content.ContentRepository;
+import com.coremedia.cap.content.ContentType;
+import com.coremedia.cap.content.events.ContentEvent;
+import com.coremedia.cap.content.events.ContentRepositoryListener;
+import com.coremedia.cap.content.events.ContentRepositoryListenerBase;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory index of a taxonomy hierarchy, organized as a trie keyed by the names of the taxonomies along a path.
+ * <p>
+ * The first segment of a path is a taxonomy directly inside the taxonomy root folder, every following segment is
+ * found in the "children" link list of the previous taxonomy. If several taxonomies have the same name, the first one
+ * wins. The index is built once and afterwards kept up to date with the content
+ * repository events of the indexed taxonomies, so that resolving a tag path does not cause any repository reads.
+ */
+public class TaxonomyPathIndex {
+
+    /**
+     * The name of the link list property holding the child taxonomies of a taxonomy.
+     */
+    private static final String PROPERTY_CHILDREN = "children";
+
+    /**
+     * The separator between the taxonomy names of a taxonomy path.
+     */
+    private static final String PATH_SEPARATOR = "/";
+
+    /**
+     * The content repository which contains the taxonomies.
+     */
+    private final ContentRepository contentRepository;
+
+    /**
+     * The folder which contains the top level taxonomies.
+     */
+    private final Content taxonomyRootFolder;
+
+    /**
+     * The logger from the tool using this index.
+     */
+    private final Logger logger;
+
+    /**
+     * The root of the trie. It has no content, its children are the top level taxonomies.
+     */
+    private final Node root = new Node(null, null, null);
+
+    /**
+     * All indexed taxonomies and their trie nodes, used to apply repository events to the trie.
+     */
+    private final Map<Content, Node> nodesByContent = new ConcurrentHashMap<>();
+
+    /**
+     * The content types of the indexed taxonomies, used to ignore the events of other contents without reading them.
+     */
+    private final Set<ContentType> taxonomyTypes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Listener which keeps the index up to date while it is open.
+     */
+    private final ContentRepositoryListener listener = new ContentRepositoryListenerBase() {
+        @Override
+        protected void handleContentEvent(ContentEvent event) {
+            try {
+                contentChanged(event.getContent(), event.getType());
+            } catch (Exception e) {
+                logger.warn("Could not update the taxonomy index for event " + event, e);
+            }
+        }
+    };
+
+    /**
+     * Constructor.
+     *
+     * @param contentRepository  the content repository which contains the taxonomies
+     * @param taxonomyRootFolder the folder which contains the top level taxonomies
+     * @param logger             logger from the tool using this index
+     */
+    public TaxonomyPathIndex(ContentRepository contentRepository, Content taxonomyRootFolder, Logger logger) {
+        this.contentRepository = contentRepository;
+        this.taxonomyRootFolder = taxonomyRootFolder;
+        this.logger = logger;
+    }
+
+    /**
+     * Builds the index and starts listening for changes of the indexed taxonomies.
+     */
+    public void open() {
+        contentRepository.addContentRepositoryListener(listener);
+        long start = System.currentTimeMillis();
+        build();
+        logger.info("Indexed " + nodesByContent.size() + " taxonomies below " + taxonomyRootFolder.getPath() +
+                " in " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    /**
+     * Stops listening for changes. The index must not be used afterwards.
+     */
+    public void close() {
+        contentRepository.removeContentRepositoryListener(listener);
+    }
+
+    /**
+     * Looks up the taxonomy at the specified path.
+     *
+     * @param taxonomyPath the path hierarchy of the desired taxonomy tag. Must be in the form of "/taxonomy/path/1/"
+     * @return the taxonomy specified in the path hierarchy. If no such taxonomy exists, returns null
+     */
+    @Nullable
+    public Content lookup(String taxonomyPath) {
+        if (taxonomyPath == null || taxonomyPath.isEmpty() || taxonomyPath.equals("[]")) {
+            return null;
+        }
+        Node node = root;
+        for (String segment : taxonomyPath.split(PATH_SEPARATOR)) {
+            // skip any empty entries that may exist from splitting the path
+            if (segment.trim().isEmpty()) {
+                continue;
+            }
+            node = node.children.get(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node.content;
+    }
+
+    /**
+     * (Re-)Builds the complete index.
+     */
+    private synchronized void build() {
+        Map<String, Node> topLevel = new ConcurrentHashMap<>();
+        List<Node> level = new ArrayList<>();
+        for (Content child : taxonomyRootFolder.getChildren()) {
+            if (!child.isFolder() && !topLevel.containsKey(child.getName())) {
+                Node node = new Node(child.getName(), child, root);
+                topLevel.put(node.name, node);
+                level.add(node);
+            }
+        }
+        expand(level, new HashSet<>(contentsOf(level)));
+        root.children = topLevel;
+
+        nodesByContent.clear();
+        index(root);
+    }
+
+    /**
+     * Loads the subtrees of the specified nodes, level by level. Each level is prefetched in one batch.
+     *
+     * @param level   the nodes whose subtrees to load
+     * @param visited the taxonomies already contained in the loaded part of the trie, to guard against cycles
+     */
+    private void expand(List<Node> level, Set<Content> visited) {
+        while (!level.isEmpty()) {
+            prefetch(contentsOf(level));
+            List<Node> nextLevel = new ArrayList<>();
+            for (Node node : level) {
+                List<Content> children = (List<Content>) node.content.get(PROPERTY_CHILDREN);
+                if (children == null) {
+                    continue;
+                }
+                for (Content child : children) {
+                    // The first taxonomy with a given name wins
+                    if (child != null && !node.children.containsKey(child.getName()) && visited.add(child)) {
+                        Node childNode = new Node(child.getName(), child, node);
+                        node.children.put(childNode.name, childNode);
+                        nextLevel.add(childNode);
+                    }
+                }
+            }
+            level = nextLevel;
+        }
+    }
+
+    /**
+     * Applies a change of a content to the index.
+     *
+     * @param content   the changed content
+     * @param eventType the type of the change, one of the {@link ContentEvent} type constants
+     */
+    private synchronized void contentChanged(Content content, String eventType) {
+        Node node = nodesByContent.get(content);
+        if (node == null) {
+            // A new top level taxonomy: its parent will not be checked in, so it must be added here
+            if ((ContentEvent.CONTENT_CREATED.equals(eventType) || ContentEvent.CONTENT_MOVED.equals(eventType) ||
+                    ContentEvent.CONTENT_UNDELETED.equals(eventType)) && isTaxonomyCandidate(content) &&
+                    isTopLevelTaxonomy(content) && !root.children.containsKey(content.getName())) {
+                logger.debug("Adding taxonomy {} to the taxonomy index.", content.getId());
+                rebuild(new Node(content.getName(), content, root));
+            }
+        } else if (ContentEvent.CONTENT_DELETED.equals(eventType) ||
+                ContentEvent.CONTENT_DESTROYED.equals(eventType) ||
+                (node.parent == root && !isTopLevelTaxonomy(content))) {
+            logger.debug("Removing taxonomy {} from the taxonomy index.", content.getId());
+            node.parent.children.remove(node.name, node);
+            unindex(node);
+        } else {
+            // Renamed or checked in with possibly changed children: reload the subtree of the taxonomy. The new subtree
+            // replaces the old one at once, so that concurrent lookups always find one of them.
+            logger.debug("Reloading taxonomy {} in the taxonomy index.", content.getId());
+            Node replacement = new Node(content.getName(), content, node.parent);
+            rebuild(replacement);
+            if (!replacement.name.equals(node.name)) {
+                node.parent.children.remove(node.name, node);
+            }
+            unindex(node);
+        }
+    }
+
+    /**
+     * Loads the subtree of a new node and links it into the trie, replacing the node of the same name.
+     *
+     * @param node the new node
+     */
+    private void rebuild(Node node) {
+        Set<Content> visited = new HashSet<>();
+        for (Node ancestor = node; ancestor != null && ancestor.content != null; ancestor = ancestor.parent) {
+            visited.add(ancestor.content);
+        }
+        List<Node> level = new ArrayList<>();
+        level.add(node);
+        expand(level, visited);
+        node.parent.children.put(node.name, node);
+        index(node);
+    }
+
+    /**
+     * Checks cheaply if a content may be a taxonomy, before its parent is read: folders and contents of other types than
+     * the indexed taxonomies are ignored. If no taxonomy has been indexed yet, every document is a candidate.
+     *
+     * @param content the content to check
+     * @return true if the content may be a taxonomy
+     */
+    private boolean isTaxonomyCandidate(Content content) {
+        return !content.isFolder() && (taxonomyTypes.isEmpty() || taxonomyTypes.contains(content.getType()));
+    }
+
+    /**
+     * Checks if a content is a taxonomy directly inside the taxonomy root folder.
+     *
+     * @param content the content to check
+     * @return true if the content is a top level taxonomy. Else, false.
+     */
+    private boolean isTopLevelTaxonomy(Content content) {
+        return !content.isFolder() && !content.isDeleted() && !content.isDestroyed() &&
+                taxonomyRootFolder.equals(content.getParent());
+    }
+
+    /**
+     * Adds the contents of a subtree to the content lookup map.
+     *
+     * @param node the root of the subtree, may be null
+     */
+    private void index(Node node) {
+        if (node != null) {
+            if (node.content != null) {
+                nodesByContent.put(node.content, node);
+                taxonomyTypes.add(node.content.getType());
+            }
+            for (Node child : node.children.values()) {
+                index(child);
+            }
+        }
+    }
+
+    /**
+     * Removes the contents of a subtree from the content lookup map, unless they have been indexed by another node.
+     *
+     * @param node the root of the subtree
+     */
+    private void unindex(Node node) {
+        nodesByContent.remove(node.content, node);
+        for (Node child : node.children.values()) {
+            unindex(child);
+        }
+    }
+
+    /**
+     * Prefetches a batch of taxonomies.
+     *
+     * @param taxonomies the taxonomies to prefetch
+     */
+    private void prefetch(List<Content> taxonomies) {
+        // Iterating the collection triggers the batched retrieval of the contents
+        for (Content ignored : contentRepository.withPrefetch(taxonomies, taxonomies.size())) {
+            // nothing to do
+        }
+    }
+
+    private static List<Content> contentsOf(Collection<Node> nodes) {
+        List<Content> contents = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            contents.add(node.content);
+        }
+        return contents;
+    }
+
+    /**
+     * A node of the trie: a taxonomy and its child taxonomies by name.
+     */
+    private static class Node {
+        private final String name;
+        private final Content content;
+        private final Node parent;
+        private volatile Map<String, Node> children = new ConcurrentHashMap<>();
+
+        Node(String name, Content content, Node parent) {
+            this.name = name;
+            this.content = content;
+            this.parent = parent;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.coremedia.csv.importer;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the parsing time of {@link CSVTokenizer} and commons-csv on CSV export files. Both parsers read every value
+ * of every record, and the values are compared, so that a difference in parsing is reported rather than measured.
+ * <p>
+ * Usage: {@code java -cp <importer test classpath> com.coremedia.csv.importer.CSVTokenizerBenchmark [-r rounds] file...}
+ */
+public class CSVTokenizerBenchmark {
+
+    private static final int DEFAULT_ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int rounds = DEFAULT_ROUNDS;
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-r".equals(args[i]) && i + 1 < args.length) {
+                rounds = Integer.parseInt(args[++i]);
+            } else {
+                files.add(new File(args[i]));
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: CSVTokenizerBenchmark [-r rounds] file...");
+            System.exit(1);
+        }
+
+        for (File file : files) {
+            verify(file);
+            // the first round warms up the JIT and the file system cache
+            for (int round = 0; round <= rounds; round++) {
+                long commonsTime = time(() -> parseWithCommonsCSV(file));
+                long tokenizerTime = time(() -> parseWithTokenizer(file));
+                if (round > 0) {
+                    long records = parseWithTokenizer(file);
+                    System.out.println(file.getName() + " round " + round + ": commons-csv " +
+                            format(commonsTime, records) + ", tokenizer " + format(tokenizerTime, records));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that both parsers read the same values from a file.
+     */
+    private static void verify(File file) throws IOException {
+        try (CSVParser parser = new CSVParser(open(file), CSVFormat.EXCEL.withHeader());
+             CSVTokenizer tokenizer = new CSVTokenizer(open(file), CSVTokenizer.DEFAULT_BUFFER_SIZE, 0, 1)) {
+            // skip the header, which commons-csv does not return as a record
+            tokenizer.next();
+            for (CSVRecord expected : parser) {
+                ImportRecord actual = tokenizer.next();
+                if (actual == null) {
+                    throw new IllegalStateException(file.getName() + ": the tokenizer ended before record " +
+                            expected.getRecordNumber());
+                }
+                boolean equal = expected.size() == actual.size()
+                        && expected.getCharacterPosition() == actual.getCharacterPosition();
+                for (int i = 0; equal && i < expected.size(); i++) {
+                    equal = expected.get(i).equals(actual.get(i));
+                }
+                if (!equal) {
+                    throw new IllegalStateException(file.getName() + ": record " + expected.getRecordNumber() +
+                            " is parsed differently");
+                }
+            }
+            if (tokenizer.next() != null) {
+                throw new IllegalStateException(file.getName() + ": the tokenizer found more records");
+            }
+        }
+    }
+
+    private static long parseWithCommonsCSV(File file) throws IOException {
+        long records = 0;
+        try (CSVParser parser = new CSVParser(open(file), CSVFormat.EXCEL.withHeader())) {
+            for (CSVRecord record : parser) {
+                for (int i = 0; i < record.size(); i++) {
+                    record.get(i);
+                }
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private static long parseWithTokenizer(File file) throws IOException {
+        long records = 0;
+        try (CSVTokenizer tokenizer = new CSVTokenizer(open(file), CSVTokenizer.DEFAULT_BUFFER_SIZE, 0, 1)) {
+            tokenizer.next();
+            for (ImportRecord record = tokenizer.next(); record != null; record = tokenizer.next()) {
+                for (int i = 0; i < record.size(); i++) {
+                    record.get(i);
+                }
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private static Reader open(File file) throws IOException {
+        return Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    private static long time(Parse parse) throws IOException {
+        long start = System.nanoTime();
+        parse.run();
+        return System.nanoTime() - start;
+    }
+
+    private static String format(long nanos, long records) {
+        long millis = Math.max(1, nanos / 1_000_000);
+        return millis + " ms (" + (records * 1000 / millis) + " records/s)";
+    }
+
+    @FunctionalInterface
+    private interface Parse {
+        long run() throws IOException;
+    }
+}
@@ -0,0 +1,152 @@
+package com.coremedia.csv.importer;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link CSVTokenizer} splits CSV text into the same records as commons-csv with the EXCEL format. Small
+ * buffers are used as well, so that records and values are split across buffers at every position.
+ */
+public class CSVTokenizerTest {
+
+    private static final int[] BUFFER_SIZES = {1, 2, 3, 5, 8, CSVTokenizer.DEFAULT_BUFFER_SIZE};
+
+    @Test
+    public void testSimpleRecords() throws IOException {
+        assertParsedLikeCommonsCSV("id,title,teaser\r\n1,First,One\r\n2,Second,Two\r\n");
+    }
+
+    @Test
+    public void testEmptyValues() throws IOException {
+        assertParsedLikeCommonsCSV(",,\r\na,,\r\n,,b\r\n");
+    }
+
+    @Test
+    public void testQuotedLineBreaks() throws IOException {
+        assertParsedLikeCommonsCSV("\"a\r\nb\",\"c\nd\",\"e\rf\"\r\n\"\r\n\",x\r\n");
+    }
+
+    @Test
+    public void testDoubledQuotes() throws IOException {
+        assertParsedLikeCommonsCSV("\"say \"\"hi\"\"\",\"\"\"\"\"\",\"\"\r\n\"a,\"\"b\"\",c\",d\r\n");
+    }
+
+    @Test
+    public void testQuotesInUnquotedValues() throws IOException {
+        assertParsedLikeCommonsCSV("a\"b,c\"\"d\r\n");
+    }
+
+    @Test
+    public void testCarriageReturnLineEndings() throws IOException {
+        assertParsedLikeCommonsCSV("a,b\rc,d\r\"e\",\"f\"\r");
+    }
+
+    @Test
+    public void testLineFeedLineEndings() throws IOException {
+        assertParsedLikeCommonsCSV("a,b\nc,d\n\"e\",\"f\"\n");
+    }
+
+    @Test
+    public void testTrailingEmptyLine() throws IOException {
+        assertParsedLikeCommonsCSV("a,b\r\nc,d\r\n\r\n");
+        assertParsedLikeCommonsCSV("a,b\nc,d\n\n");
+    }
+
+    @Test
+    public void testEmptyLines() throws IOException {
+        assertParsedLikeCommonsCSV("a,b\r\n\r\n\r\nc,d\r\n");
+    }
+
+    @Test
+    public void testNoFinalLineBreak() throws IOException {
+        assertParsedLikeCommonsCSV("a,b\r\nc,d");
+        assertParsedLikeCommonsCSV("a,b\r\n\"c\",\"d\"");
+    }
+
+    @Test
+    public void testWhitespaceAfterClosingQuote() throws IOException {
+        assertParsedLikeCommonsCSV("\"a\" ,\"b\"\t\r\n\"c\"  ,d\n\"e\" \r\"f\"  ");
+    }
+
+    @Test
+    public void testMultiByteCharacters() throws IOException {
+        assertParsedLikeCommonsCSV("\u00e4,\"\u00f6\r\n\u00fc\",\ud83d\ude00\r\n");
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidCharacterAfterClosingQuote() throws IOException {
+        parseWithTokenizer("\"a\"b,c\r\n", CSVTokenizer.DEFAULT_BUFFER_SIZE);
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnclosedQuotedValue() throws IOException {
+        parseWithTokenizer("a,\"b\r\n", CSVTokenizer.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Asserts that the tokenizer finds the same records as commons-csv, with any buffer size and when the text is
+     * given as a buffer.
+     */
+    private static void assertParsedLikeCommonsCSV(String text) throws IOException {
+        List<String> expected = parseWithCommonsCSV(text);
+        for (int bufferSize : BUFFER_SIZES) {
+            assertEquals("buffer size " + bufferSize, expected, parseWithTokenizer(text, bufferSize));
+        }
+        char[] chars = ("unused" + text).toCharArray();
+        List<String> actual = new ArrayList<>();
+        try (CSVTokenizer tokenizer = new CSVTokenizer(chars, 6, text.length(), 0, 1)) {
+            for (ImportRecord record : tokenizer) {
+                actual.add(describe(record));
+            }
+        }
+        assertEquals("text given as a buffer", expected, actual);
+    }
+
+    private static List<String> parseWithCommonsCSV(String text) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (CSVParser parser = new CSVParser(new StringReader(text), CSVFormat.EXCEL)) {
+            for (CSVRecord record : parser) {
+                List<String> values = new ArrayList<>();
+                for (String value : record) {
+                    values.add(value);
+                }
+                records.add(describe(record.getRecordNumber(), record.getCharacterPosition(), values));
+            }
+        }
+        return records;
+    }
+
+    private static List<String> parseWithTokenizer(String text, int bufferSize) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (CSVTokenizer tokenizer = new CSVTokenizer(new StringReader(text), bufferSize, 0, 1)) {
+            for (ImportRecord record = tokenizer.next(); record != null; record = tokenizer.next()) {
+                records.add(describe(record));
+            }
+        }
+        return records;
+    }
+
+    static String describe(ImportRecord record) {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < record.size(); i++) {
+            values.add(record.get(i));
+        }
+        return describe(record.getRecordNumber(), record.getCharacterPosition(), values);
+    }
+
+    /**
+     * Describes a record, so that a difference in any of its properties shows in the assertion message.
+     */
+    static String describe(long recordNumber, long characterPosition, List<String> values) {
+        return "#" + recordNumber + " @" + characterPosition + " " + values;
+    }
+}
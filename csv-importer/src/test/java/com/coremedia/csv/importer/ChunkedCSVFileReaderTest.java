@@ -0,0 +1,143 @@
+package com.coremedia.csv.importer;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link ChunkedCSVFileReader} reads the same records as a commons-csv parser with the EXCEL format and a
+ * header, including their record numbers and character positions. Small chunks are used as well, so that each record
+ * is a chunk of its own.
+ */
+public class ChunkedCSVFileReaderTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChunkedCSVFileReaderTest.class);
+
+    private static final int[] CHUNK_SIZES = {1, 7, 32, ChunkedCSVFileReader.DEFAULT_CHUNK_SIZE};
+
+    private static final int[] THREADS = {1, 3};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSimpleRecords() throws IOException {
+        assertReadLikeCommonsCSV("id,title,teaser\r\n1,First,One\r\n2,Second,Two\r\n3,Third,Three\r\n");
+    }
+
+    @Test
+    public void testQuotedLineBreaks() throws IOException {
+        assertReadLikeCommonsCSV("id,text\r\n1,\"a\r\nb\"\r\n2,\"c\nd\"\r\n3,\"e\rf\"\r\n");
+    }
+
+    @Test
+    public void testDoubledQuotes() throws IOException {
+        assertReadLikeCommonsCSV("id,text\r\n1,\"say \"\"hi\"\"\"\r\n2,\"\"\"\"\r\n3,\"a,\"\"b\r\n\"\"\"\r\n");
+    }
+
+    @Test
+    public void testCarriageReturnLineEndings() throws IOException {
+        assertReadLikeCommonsCSV("id,text\r1,a\r2,\"b\"\r3,c\r");
+    }
+
+    @Test
+    public void testTrailingEmptyLine() throws IOException {
+        assertReadLikeCommonsCSV("id,text\r\n1,a\r\n2,b\r\n\r\n");
+    }
+
+    @Test
+    public void testNoFinalLineBreak() throws IOException {
+        assertReadLikeCommonsCSV("id,text\r\n1,a\r\n2,b");
+    }
+
+    @Test
+    public void testWhitespaceAfterClosingQuote() throws IOException {
+        assertReadLikeCommonsCSV("id,text\r\n1,\"a\" \r\n\"2\"\t,b\r\n");
+    }
+
+    @Test
+    public void testMultiByteCharacters() throws IOException {
+        assertReadLikeCommonsCSV("id,text\r\n1,\u00e4\u00f6\u00fc\r\n2,\"\ud83d\ude00\r\n\u20ac\"\r\n3,x\r\n");
+    }
+
+    @Test
+    public void testStartCharacterPosition() throws IOException {
+        String text = "id,text\r\n1,a\r\n2,\"b\r\nc\"\r\n3,d\r\n";
+        File file = write(text);
+        List<String> expected = parseWithCommonsCSV(text);
+        // each record is a chunk of its own, the chunks of the first two records end before the start position
+        try (ChunkedCSVFileReader reader = new ChunkedCSVFileReader(file, 1, 1, LOG)) {
+            reader.setStartCharacterPosition(text.indexOf("3,d"));
+            reader.open();
+            assertEquals(expected.subList(2, 3), read(reader));
+        }
+    }
+
+    /**
+     * Asserts that the reader reads the same header and records as commons-csv, with any chunk size and number of
+     * threads.
+     */
+    private void assertReadLikeCommonsCSV(String text) throws IOException {
+        File file = write(text);
+        Map<String, Integer> expectedHeaderMap;
+        try (CSVParser parser = new CSVParser(new StringReader(text), CSVFormat.EXCEL.withHeader())) {
+            expectedHeaderMap = parser.getHeaderMap();
+        }
+        List<String> expected = parseWithCommonsCSV(text);
+        for (int chunkSize : CHUNK_SIZES) {
+            for (int threads : THREADS) {
+                try (ChunkedCSVFileReader reader = new ChunkedCSVFileReader(file, chunkSize, threads, LOG)) {
+                    reader.open();
+                    String message = "chunk size " + chunkSize + ", " + threads + " threads";
+                    assertEquals(message, expectedHeaderMap, reader.getHeaderMap());
+                    assertEquals(message, expected, read(reader));
+                }
+            }
+        }
+    }
+
+    private static List<String> parseWithCommonsCSV(String text) throws IOException {
+        List<String> records = new ArrayList<>();
+        try (CSVParser parser = new CSVParser(new StringReader(text), CSVFormat.EXCEL.withHeader())) {
+            for (CSVRecord record : parser) {
+                List<String> values = new ArrayList<>();
+                for (String value : record) {
+                    values.add(value);
+                }
+                records.add(CSVTokenizerTest.describe(record.getRecordNumber(), record.getCharacterPosition(),
+                        values));
+            }
+        }
+        return records;
+    }
+
+    private static List<String> read(ChunkedCSVFileReader reader) {
+        List<String> records = new ArrayList<>();
+        for (ImportRecord record : reader) {
+            records.add(CSVTokenizerTest.describe(record));
+        }
+        return records;
+    }
+
+    private File write(String text) throws IOException {
+        File file = temporaryFolder.newFile();
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
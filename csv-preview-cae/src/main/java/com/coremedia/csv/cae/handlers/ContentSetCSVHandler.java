@@ -21,11 +21,17 @@ public class ContentSetCSVHandler extends BaseCSVHandler {
    */
   private static final String CSV_LINK_PATTERN = "/contentsetexport/{template}";
 
+  /**
+   * The request parameter which turns on the profiling of the export.
+   */
+  public static final String PROFILE_PARAMETER = "profile";
+
   /**
    * Handles the incoming request. Parses the list of content IDs and passes the request/response info to the
    * utility class.
    *
    * @param contentIds A list of content IDs to include in the export
+   * @param profile  true to return the cost of each column and content type in the response headers
    * @param request  the HTTP Request, used for building content beans
    * @param response the HTTP Response, used for building content beans and writing CSV
    * @throws IOException if an error occurs writing the CSV
@@ -36,11 +42,12 @@ public class ContentSetCSVHandler extends BaseCSVHandler {
   @ResponseBody
   public void handleRequest(@PathVariable("template") String template,
                             @RequestBody int[] contentIds,
+                            @RequestParam(value = PROFILE_PARAMETER, defaultValue = "false") boolean profile,
                             HttpServletRequest request,
                             HttpServletResponse response)
           throws IOException {
     String templateName = URLDecoder.decode(template, "UTF-8");
-    CSVUtil.generateCSV(contentIds, templateName, request, response);
+    CSVUtil.generateCSV(contentIds, templateName, profile, request, response);
 
   }
 }
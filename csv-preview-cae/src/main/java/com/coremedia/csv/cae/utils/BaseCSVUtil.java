@@ -12,13 +12,20 @@ import com.coremedia.cap.content.Version;
 import com.coremedia.cap.content.publication.PublicationService;
 import com.coremedia.cap.struct.Struct;
 import com.coremedia.csv.common.CSVConfig;
+import com.coremedia.csv.common.CSVFingerprint;
 import com.coremedia.objectserver.beans.ContentBean;
 import com.coremedia.objectserver.beans.ContentBeanFactory;
 import com.coremedia.objectserver.web.links.LinkFormatter;
 import com.coremedia.xml.Markup;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Required;
+import org.springframework.web.util.ContentCachingResponseWrapper;
 import org.supercsv.io.CsvMapWriter;
 import org.supercsv.io.ICsvMapWriter;
 import org.supercsv.prefs.CsvPreference;
@@ -28,6 +35,8 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static com.coremedia.csv.common.CSVConstants.*;
 
@@ -52,6 +61,32 @@ public abstract class BaseCSVUtil {
    */
   private static final String TAXONOMY_PATH_SEPARATOR = "/";
 
+  /**
+   * The name of the timer of the exports, tagged with their template.
+   */
+  public static final String METRIC_EXPORT = "csv.export";
+
+  /**
+   * The name of the counter of the exported records, tagged with their outcome.
+   */
+  public static final String METRIC_RECORDS = "csv.export.records";
+
+  /**
+   * The name of the timer of the content prefetches, recorded per batch.
+   */
+  public static final String METRIC_PREFETCH = "csv.export.prefetch";
+
+  /**
+   * The name of the timer of the column evaluations, tagged with their column. The custom columns are recorded
+   * together, as the pseudo column {@value #CUSTOM_COLUMNS}.
+   */
+  public static final String METRIC_COLUMN = "csv.export.column";
+
+  /**
+   * The column tag of the evaluation of the custom columns.
+   */
+  private static final String CUSTOM_COLUMNS = "(custom)";
+
   /**
    * Version status when the content has been Approved.
    */
@@ -118,6 +153,31 @@ public abstract class BaseCSVUtil {
    */
   protected String filenamePrefix;
 
+  /**
+   * The registry in which the exports record their metrics.
+   */
+  private MeterRegistry meterRegistry;
+
+  /**
+   * The meters of the exports, registered by {@link #setMeterRegistry(MeterRegistry)}.
+   */
+  private Counter successCounter;
+  private Counter failureCounter;
+  private Timer prefetchTimer;
+  private final Map<String, Timer> columnTimers = new ConcurrentHashMap<>();
+
+  /**
+   * The profile of the export running on the current thread, if it is profiled.
+   */
+  private final ThreadLocal<ExportProfile> currentProfile = new ThreadLocal<>();
+
+  /**
+   * Constructor.
+   */
+  protected BaseCSVUtil() {
+    setMeterRegistry(Metrics.globalRegistry);
+  }
+
   /**
    * Generates a CSV file based on a list of content ids.
    *
@@ -128,6 +188,7 @@ public abstract class BaseCSVUtil {
    */
   public void generateCSV(int[] contentIds, String template, HttpServletRequest request, HttpServletResponse response) throws IOException {
     ICsvMapWriter csvWriter = null;
+    long start = System.nanoTime();
     try {
       List<Content> contentList = new ArrayList<>();
       String[] header = CSVConfig.getCSVHeaders(template);
@@ -153,10 +214,47 @@ public abstract class BaseCSVUtil {
 
     } finally {
       closeCSVWriter(csvWriter);
+      meterRegistry.timer(METRIC_EXPORT, "template", template).record(System.nanoTime() - start,
+              TimeUnit.NANOSECONDS);
     }
 
   }
 
+  /**
+   * Generates a CSV file based on a list of content ids, optionally profiling the cost of its columns and content
+   * types. The profile is returned in the response headers {@code HTTP_HEADER_PROFILE_COLUMNS} and
+   * {@code HTTP_HEADER_PROFILE_TYPES}. As headers must precede the body, the CSV file of a profiled export is
+   * buffered in memory until it is complete.
+   *
+   * @param template the name of the template to use for the CSV file
+   * @param profile  true to profile the export
+   * @param request  the HTTP request, used for building content beans
+   * @param response the HTTP response, used for building content beans and writing the csv
+   * @throws IOException if an error occurs generating the CSV file
+   */
+  public void generateCSV(int[] contentIds, String template, boolean profile, HttpServletRequest request,
+                          HttpServletResponse response) throws IOException {
+    if (!profile) {
+      generateCSV(contentIds, template, request, response);
+      return;
+    }
+    ExportProfile exportProfile = new ExportProfile();
+    ContentCachingResponseWrapper bufferedResponse = new ContentCachingResponseWrapper(response);
+    currentProfile.set(exportProfile);
+    try {
+      generateCSV(contentIds, template, request, bufferedResponse);
+    } finally {
+      currentProfile.remove();
+    }
+    String columns = exportProfile.formatColumns();
+    String types = exportProfile.formatTypes();
+    LOG.info("Profile of the export of {} contents with template '{}': columns: {}; content types: {}",
+            contentIds.length, template, columns, types);
+    response.setHeader(HTTP_HEADER_PROFILE_COLUMNS, columns);
+    response.setHeader(HTTP_HEADER_PROFILE_TYPES, types);
+    bufferedResponse.copyBodyToResponse();
+  }
+
   /**
    * Initializes the CSV writer.
    *
@@ -206,16 +304,30 @@ public abstract class BaseCSVUtil {
                           Map<String, String> propertiesMap, HttpServletRequest request,
                           HttpServletResponse response) throws IOException {
 
-    // Prefetch content based on batch size
-    Collection<Content> prefetchContentList = contentRepository.withPrefetch(contentList, contentBatchPrefetchSize);
+    // Prefetch content based on batch size. The batches are fetched while iterating, so the time spent in the iterator
+    // is the time of the prefetch
+    Iterator<Content> prefetchContents = contentRepository.withPrefetch(contentList, contentBatchPrefetchSize)
+            .iterator();
+    long prefetchNanos = 0;
     // Write out every content as a single record in the CSV
-    for (Content content : prefetchContentList) {
+    while (true) {
+      long start = System.nanoTime();
+      if (!prefetchContents.hasNext()) {
+        prefetchNanos += System.nanoTime() - start;
+        break;
+      }
+      Content content = prefetchContents.next();
+      prefetchNanos += System.nanoTime() - start;
+      boolean success = false;
       try {
-        writeCSVRecord(csvWriter, content, header, propertiesMap, request, response);
+        success = writeCSVRecord(csvWriter, content, header, propertiesMap, request, response);
       } catch (Exception e) {
         LOG.warn("An exception occurred while writing the CSVRecord for " + content, e);
       }
+      // each record is counted once, even if it has been generated but could not be written
+      (success ? successCounter : failureCounter).increment();
     }
+    prefetchTimer.record(prefetchNanos, TimeUnit.NANOSECONDS);
     // Always flush after each session of writing
     csvWriter.flush();
   }
@@ -229,16 +341,18 @@ public abstract class BaseCSVUtil {
    *                  CSV file
    * @param request   the HTTP request sent to the handler - used for generating links from the content
    * @param response  the HTTP response sent back from the handler - used for generating links from the content
+   * @return true if all fields of the record were set successfully. Else, false.
    * @throws IOException if an exception occurs while writing the CSV record
    */
-  protected void writeCSVRecord(ICsvMapWriter csvWriter, Content content, String[] header,
-                                Map<String, String> propertiesMap, HttpServletRequest request,
-                                HttpServletResponse response) throws IOException {
+  protected boolean writeCSVRecord(ICsvMapWriter csvWriter, Content content, String[] header,
+                                   Map<String, String> propertiesMap, HttpServletRequest request,
+                                   HttpServletResponse response) throws IOException {
     // Generate the record
     Map<String, String> csvRecord = generateCSVRecord(content, header, propertiesMap, request, response);
 
     // Write the record to the content
     csvWriter.write(csvRecord, header);
+    return "success".equals(csvRecord.get(COLUMN_STATUS));
   }
 
   /**
@@ -257,6 +371,8 @@ public abstract class BaseCSVUtil {
     // Create the map
     List<String> headerList = Arrays.asList(header);
     Map<String, String> csvRecord = new HashMap<>();
+    long recordStart = System.nanoTime();
+    long recordAllocated = getAllocatedBytes();
 
     try {
       // Add static (Metadata) properties
@@ -266,7 +382,15 @@ public abstract class BaseCSVUtil {
       populateContentPropertyFields(csvRecord, content, headerList, propertiesMap);
 
       // Add custom fields (None by default)
+      long start = System.nanoTime();
+      long allocated = getAllocatedBytes();
       populateCustomPropertyFields(csvRecord, content, headerList, propertiesMap); //VFC_ADAPT
+      recordColumn(CUSTOM_COLUMNS, start, allocated);
+
+      // Add the fingerprint of all other fields, if requested by the template
+      if (headerList.contains(COLUMN_FINGERPRINT)) {
+        csvRecord.put(COLUMN_FINGERPRINT, generateFingerprint(csvRecord, headerList, content));
+      }
 
       // Update record status to success if all fields were successfully set
       csvRecord.put(COLUMN_STATUS, "success");
@@ -274,6 +398,11 @@ public abstract class BaseCSVUtil {
       LOG.warn(e.toString());
       handleBadRecord(content, csvRecord);
     }
+    ExportProfile profile = currentProfile.get();
+    if (profile != null) {
+      profile.recordType(content.getType().getName(), System.nanoTime() - recordStart,
+              profile.getAllocatedBytes() - recordAllocated);
+    }
     return csvRecord;
   }
 
@@ -292,56 +421,87 @@ public abstract class BaseCSVUtil {
   protected void populateContentMetadataFields(Map<String, String> csvRecord, Content content,
                                                List<String> headerList, HttpServletRequest request,
                                                HttpServletResponse response) {
-    ContentBean bean = contentBeanFactory.createBeanFor(content, ContentBean.class);
-    String metadataProperty;
-    if (headerList.contains(COLUMN_ID)) {
-      metadataProperty = getContentIdString(content);
-      csvRecord.put(COLUMN_ID, metadataProperty);
+    for (String headerField : headerList) {
+      // each column is measured on its own, as their cost differs widely, e.g. for the URL
+      long start = System.nanoTime();
+      long allocated = getAllocatedBytes();
+      String metadataProperty = evaluateContentMetadataField(headerField, content, request, response);
+      if (metadataProperty != null) {
+        csvRecord.put(headerField, metadataProperty);
+        recordColumn(headerField, start, allocated);
+      }
     }
-    if (headerList.contains(COLUMN_NAME)) {
-      metadataProperty = content.getName();
-      csvRecord.put(COLUMN_NAME, metadataProperty);
+  }
+
+  /**
+   * Determines the value of a metadata column of the specified content.
+   *
+   * @param headerField the column header
+   * @param content     the content from which the metadata will be requested
+   * @param request     the HTTP request sent to the handler - used for generating links from the content
+   * @param response    the HTTP response sent back from the handler - used for generating links from the content
+   * @return the value of the column, or null if the column is not a metadata column
+   */
+  protected String evaluateContentMetadataField(String headerField, Content content, HttpServletRequest request,
+                                                HttpServletResponse response) {
+    if (COLUMN_ID.equals(headerField)) {
+      return getContentIdString(content);
+    }
+    if (COLUMN_NAME.equals(headerField)) {
+      return content.getName();
     }
-    if (headerList.contains(COLUMN_PATH)) {
-      metadataProperty = content.getPath();
-      csvRecord.put(COLUMN_PATH, metadataProperty);
+    if (COLUMN_PATH.equals(headerField)) {
+      return content.getPath();
     }
-    if (headerList.contains(COLUMN_URL)) {
-      metadataProperty = getContentURLString(bean, request, response);
-      csvRecord.put(COLUMN_URL, metadataProperty);
+    if (COLUMN_URL.equals(headerField)) {
+      ContentBean bean = contentBeanFactory.createBeanFor(content, ContentBean.class);
+      return getContentURLString(bean, request, response);
     }
-    if (headerList.contains(COLUMN_TYPE)) {
-      metadataProperty = content.getType().getName();
-      csvRecord.put(COLUMN_TYPE, metadataProperty);
+    if (COLUMN_TYPE.equals(headerField)) {
+      return content.getType().getName();
     }
-    if (headerList.contains(COLUMN_CREATION_DATE)) {
+    if (COLUMN_CREATION_DATE.equals(headerField)) {
       Calendar creationDate = content.getCreationDate();
-      metadataProperty = creationDate != null ? dateFormat.format(creationDate.getTime()) : "";
-      csvRecord.put(COLUMN_CREATION_DATE, metadataProperty);
+      return creationDate != null ? dateFormat.format(creationDate.getTime()) : "";
     }
-    if (headerList.contains(COLUMN_CREATED_BY)) {
-      metadataProperty = content.getCreator().getName();
-      csvRecord.put(COLUMN_CREATED_BY, metadataProperty);
+    if (COLUMN_CREATED_BY.equals(headerField)) {
+      return content.getCreator().getName();
     }
-    if (headerList.contains(COLUMN_LAST_MODIFICATION_DATE)) {
+    if (COLUMN_LAST_MODIFICATION_DATE.equals(headerField)) {
       Calendar lastModDate = content.getModificationDate();
-      metadataProperty = lastModDate != null ? dateFormat.format(lastModDate.getTime()) : "";
-      csvRecord.put(COLUMN_LAST_MODIFICATION_DATE, metadataProperty);
+      return lastModDate != null ? dateFormat.format(lastModDate.getTime()) : "";
     }
-    if (headerList.contains(COLUMN_LAST_MODIFIED_BY)) {
-      metadataProperty = content.getModifier().getName();
-      csvRecord.put(COLUMN_LAST_MODIFIED_BY, metadataProperty);
+    if (COLUMN_LAST_MODIFIED_BY.equals(headerField)) {
+      return content.getModifier().getName();
     }
-    if (headerList.contains(COLUMN_VERSION_STATUS)) {
-      metadataProperty = getContentVersionStatusString(content);
-      csvRecord.put(COLUMN_VERSION_STATUS, metadataProperty);
+    if (COLUMN_VERSION_STATUS.equals(headerField)) {
+      return getContentVersionStatusString(content);
     }
-    if (headerList.contains(COLUMN_PUBLICATION_DATE)) {
+    if (COLUMN_PUBLICATION_DATE.equals(headerField)) {
       PublicationService publicationService = contentRepository.getPublicationService();
       Calendar publicationDate = publicationService.getPublicationDate(content);
-      String creationDateStr = publicationDate != null ? dateFormat.format(publicationDate.getTime()) : "";
-      csvRecord.put(COLUMN_PUBLICATION_DATE, creationDateStr);
+      return publicationDate != null ? dateFormat.format(publicationDate.getTime()) : "";
     }
+    return null;
+  }
+
+  /**
+   * Generates the fingerprint of a CSV record, which allows the importer to skip the record if neither the record
+   * nor the content has changed since the export.
+   *
+   * @param csvRecord  the CSV record, populated with all other fields
+   * @param headerList the list of headers which determines the order of the fields
+   * @param content    the content from which the CSV record was generated
+   * @return the fingerprint of the record
+   */
+  protected String generateFingerprint(Map<String, String> csvRecord, List<String> headerList, Content content) {
+    List<String> values = new ArrayList<>(headerList.size());
+    for (String headerField : headerList) {
+      if (CSVFingerprint.isFingerprinted(headerField)) {
+        values.add(csvRecord.get(headerField));
+      }
+    }
+    return CSVFingerprint.compute(values, content);
   }
 
   /**
@@ -430,8 +590,11 @@ public abstract class BaseCSVUtil {
       String propertyName = propertiesMap.get(headerField);
       Object property;
       if (propertyName != null) {
+        long start = System.nanoTime();
+        long allocated = getAllocatedBytes();
         property = evaluateContentProperty(content, propertyName);
         csvRecord.put(headerField, property.toString());
+        recordColumn(headerField, start, allocated);
       }
     }
   }
@@ -626,6 +789,33 @@ public abstract class BaseCSVUtil {
   }
 
 
+  /**
+   * Records the time it took to evaluate a column of a record and, if the export is profiled, the memory it allocated.
+   *
+   * @param column    the column
+   * @param start     the start of the evaluation, from {@link System#nanoTime()}
+   * @param allocated the memory allocated before the evaluation, from {@link #getAllocatedBytes()}
+   */
+  private void recordColumn(String column, long start, long allocated) {
+    long elapsed = System.nanoTime() - start;
+    columnTimers.computeIfAbsent(column, key -> meterRegistry.timer(METRIC_COLUMN, "column", key))
+            .record(elapsed, TimeUnit.NANOSECONDS);
+    ExportProfile profile = currentProfile.get();
+    if (profile != null) {
+      profile.recordColumn(column, elapsed, profile.getAllocatedBytes() - allocated);
+    }
+  }
+
+  /**
+   * Gets the memory allocated by the current thread so far, if the export is profiled.
+   *
+   * @return the number of bytes, or 0 if the export is not profiled
+   */
+  private long getAllocatedBytes() {
+    ExportProfile profile = currentProfile.get();
+    return profile != null ? profile.getAllocatedBytes() : 0;
+  }
+
   /**
    * Generates a CSV filename.
    *
@@ -649,6 +839,22 @@ public abstract class BaseCSVUtil {
 
   /* ------- Spring-configured value setters ------- */
 
+  /**
+   * Sets the registry in which the exports record their metrics: the records exported per outcome, the time of the
+   * exports, of the content prefetches and of the evaluation of each column. Set by Spring if the actuator of the CAE
+   * provides a registry, otherwise the metrics are recorded in the global registry of Micrometer.
+   *
+   * @param meterRegistry the registry
+   */
+  @Autowired(required = false)
+  public void setMeterRegistry(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    successCounter = meterRegistry.counter(METRIC_RECORDS, "outcome", "success");
+    failureCounter = meterRegistry.counter(METRIC_RECORDS, "outcome", "fail");
+    prefetchTimer = meterRegistry.timer(METRIC_PREFETCH);
+    columnTimers.clear();
+  }
+
   /**
    * Sets the settings service.
    *
@@ -0,0 +1,137 @@
+package com.coremedia.csv.cae.utils;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the cost of a single export, per column and per content type, so that template authors can find the
+ * columns which make a report slow. The cost is the time and the memory allocated by the exporting thread, the latter
+ * only if the JVM supports measuring it. A profile is used by one thread only.
+ */
+public class ExportProfile {
+
+  /**
+   * The thread bean of the JVM, if it can measure the memory allocated by a thread. Else, null.
+   */
+  private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = getAllocationBean();
+
+  private final Map<String, Cost> columns = new HashMap<>();
+  private final Map<String, Cost> types = new HashMap<>();
+
+  /**
+   * Gets the number of bytes allocated by the current thread so far.
+   *
+   * @return the number of bytes, or 0 if the JVM cannot measure them
+   */
+  public long getAllocatedBytes() {
+    return ALLOCATION_BEAN != null ? ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+  }
+
+  /**
+   * Records the evaluation of a column of a record.
+   *
+   * @param column    the column
+   * @param nanos     the time the evaluation took, in nanoseconds
+   * @param allocated the number of bytes allocated by the evaluation
+   */
+  public void recordColumn(String column, long nanos, long allocated) {
+    columns.computeIfAbsent(column, key -> new Cost()).add(nanos, allocated);
+  }
+
+  /**
+   * Records the generation of a record.
+   *
+   * @param type      the name of the content type of the record
+   * @param nanos     the time the generation took, in nanoseconds
+   * @param allocated the number of bytes allocated by the generation
+   */
+  public void recordType(String type, long nanos, long allocated) {
+    types.computeIfAbsent(type, key -> new Cost()).add(nanos, allocated);
+  }
+
+  /**
+   * Formats the cost of the columns, most expensive first.
+   *
+   * @return the cost of the columns, see {@link #format(Map)}
+   */
+  public String formatColumns() {
+    return format(columns);
+  }
+
+  /**
+   * Formats the cost of the content types, most expensive first.
+   *
+   * @return the cost of the content types, see {@link #format(Map)}
+   */
+  public String formatTypes() {
+    return format(types);
+  }
+
+  /**
+   * Formats costs for an HTTP header, ordered by time, most expensive first. Each cost is formatted as
+   * {@code name;ms=<milliseconds>;kb=<kilobytes allocated>;n=<count>}, and the costs are separated by commas. The
+   * names are URL encoded, as they may contain commas or characters which are not allowed in HTTP headers. The
+   * allocated memory is left out if the JVM cannot measure it.
+   *
+   * @param costs the costs, by name
+   * @return the formatted costs
+   */
+  private static String format(Map<String, Cost> costs) {
+    List<Map.Entry<String, Cost>> entries = new ArrayList<>(costs.entrySet());
+    entries.sort(Comparator.comparingLong((Map.Entry<String, Cost> entry) -> entry.getValue().nanos).reversed());
+    StringBuilder builder = new StringBuilder();
+    for (Map.Entry<String, Cost> entry : entries) {
+      Cost cost = entry.getValue();
+      if (builder.length() > 0) {
+        builder.append(", ");
+      }
+      builder.append(encode(entry.getKey())).append(";ms=").append(cost.nanos / 1_000_000);
+      if (ALLOCATION_BEAN != null) {
+        builder.append(";kb=").append(cost.allocated / 1024);
+      }
+      builder.append(";n=").append(cost.count);
+    }
+    return builder.toString();
+  }
+
+  private static String encode(String name) {
+    try {
+      return URLEncoder.encode(name, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static com.sun.management.ThreadMXBean getAllocationBean() {
+    ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (threadBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+      if (allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled()) {
+        return allocationBean;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The accumulated cost of a column or content type.
+   */
+  private static class Cost {
+    private long nanos;
+    private long allocated;
+    private long count;
+
+    void add(long nanos, long allocated) {
+      this.nanos += nanos;
+      this.allocated += allocated;
+      count++;
+    }
+  }
+}
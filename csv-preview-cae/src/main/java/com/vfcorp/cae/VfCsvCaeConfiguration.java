@@ -1,7 +1,9 @@
 package com.vfcorp.cae;
 
 import com.coremedia.blueprint.cae.handlers.NavigationSegmentsUriHelper;
+import com.coremedia.cache.Cache;
 import com.vfcorp.cae.handler.NavigationResolverHandler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -15,7 +17,12 @@ import org.springframework.context.annotation.Configuration;
 public class VfCsvCaeConfiguration {
 
     @Bean
-    public NavigationResolverHandler navigationResolverHandler(NavigationSegmentsUriHelper navigationSegmentsUriHelper){
-        return new NavigationResolverHandler(navigationSegmentsUriHelper);
+    public NavigationResolverHandler navigationResolverHandler(NavigationSegmentsUriHelper navigationSegmentsUriHelper,
+                                                               Cache cache,
+                                                               @Value("${vfcsv.navigation-cache.capacity:" +
+                                                                       NavigationResolverHandler.DEFAULT_CACHE_CAPACITY +
+                                                                       "}") long cacheCapacity) {
+        cache.setCapacity(NavigationResolverHandler.CACHE_CLASS, cacheCapacity);
+        return new NavigationResolverHandler(navigationSegmentsUriHelper, cache);
     }
 }
@@ -2,14 +2,24 @@ package com.vfcorp.cae.handler;
 
 import com.coremedia.blueprint.cae.handlers.NavigationSegmentsUriHelper;
 import com.coremedia.blueprint.common.navigation.Navigation;
+import com.coremedia.cache.Cache;
+import com.coremedia.cache.CacheKey;
 import com.vfcorp.csv.common.VfCsvConstants;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Handler that tries to resolve a path-segment to a navigation-resource.
  *
@@ -17,24 +27,141 @@ import org.springframework.web.bind.annotation.ResponseBody;
  *
  * Sample URL for local testing: http://localhost:40980/blueprint/servlet/getNavigationForUriPath?uriPath=blackapp-de-de/ccc
  *
+ * Many paths can be resolved in one request by posting them as form parameters to
+ * {@link VfCsvConstants#GET_NAVIGATIONS_FOR_URI_PATHS}, e.g. uriPath=blackapp-de-de/ccc&amp;uriPath=blackapp-de-de/ddd
+ *
+ * Resolved paths are cached in the CAE cache, including paths which cannot be resolved. The cache entries depend on
+ * the navigation content read while resolving, so they are invalidated when the navigation changes. The number of
+ * entries is bounded by the capacity of the cache class {@link #CACHE_CLASS}.
+ *
  * @author Markus Schwarz
  */
 @RequestMapping
+@ManagedResource(objectName = "com.vfcorp.cae:type=NavigationResolverHandler",
+        description = "Resolves uri paths to navigations for CSV imports")
 public class NavigationResolverHandler {
 
     protected static final String NO_NAVIGATION_FOUND_MSG = "No navigation could be found for '%s'.";
+
+    /**
+     * The cache class of the resolved paths.
+     */
+    public static final String CACHE_CLASS = NavigationResolverHandler.class.getName();
+
+    /**
+     * The default capacity of the cache class {@link #CACHE_CLASS}.
+     */
+    public static final long DEFAULT_CACHE_CAPACITY = 5000;
+
+    /**
+     * Cached value of paths which cannot be resolved.
+     */
+    private static final String NOT_FOUND = "";
+
     private final NavigationSegmentsUriHelper navigationSegmentsUriHelper;
+    private final Cache cache;
 
-    public NavigationResolverHandler(NavigationSegmentsUriHelper navigationSegmentsUriHelper) {
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public NavigationResolverHandler(NavigationSegmentsUriHelper navigationSegmentsUriHelper, Cache cache) {
         this.navigationSegmentsUriHelper = navigationSegmentsUriHelper;
+        this.cache = cache;
     }
 
     @GetMapping(value = VfCsvConstants.GET_NAVIGATION_FOR_URI_PATH)
     @ResponseBody
-    public Object getNavigationForUriPath(@RequestParam(value = "uriPath") String uriPath) {
-        Navigation navigation = navigationSegmentsUriHelper.parsePath(uriPath);
-        return (navigation == null)
+    public Object getNavigationForUriPath(@RequestParam(value = VfCsvConstants.URI_PATH_PARAMETER) String uriPath) {
+        String navigationId = getNavigationId(uriPath);
+        return (navigationId == null)
             ? ResponseEntity.status(HttpStatus.NOT_FOUND).body(String.format(NO_NAVIGATION_FOUND_MSG, uriPath))
-            : String.valueOf(navigation.getContext().getContentId());
+            : navigationId;
+    }
+
+    /**
+     * Resolves many path-segments in one request.
+     *
+     * @param uriPaths the paths to resolve
+     * @return one line per resolved path, holding the path and the navigation id separated by a tab. Paths which
+     * cannot be resolved are omitted.
+     */
+    @PostMapping(value = VfCsvConstants.GET_NAVIGATIONS_FOR_URI_PATHS, produces = MediaType.TEXT_PLAIN_VALUE)
+    @ResponseBody
+    public String getNavigationsForUriPaths(@RequestParam(value = VfCsvConstants.URI_PATH_PARAMETER)
+                                                List<String> uriPaths) {
+        StringBuilder result = new StringBuilder();
+        for (String uriPath : new LinkedHashSet<>(uriPaths)) {
+            // tabs and line breaks would break the response format, such paths cannot be resolved anyway
+            if (uriPath.indexOf('\t') >= 0 || uriPath.indexOf('\n') >= 0 || uriPath.indexOf('\r') >= 0) {
+                continue;
+            }
+            String navigationId = getNavigationId(uriPath);
+            if (navigationId != null) {
+                result.append(uriPath).append('\t').append(navigationId).append('\n');
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Resolves a path-segment to the id of a navigation, using the cache.
+     *
+     * @param uriPath the path to resolve
+     * @return the numeric content id of the navigation, or null if the path cannot be resolved
+     */
+    private String getNavigationId(String uriPath) {
+        lookups.incrementAndGet();
+        String navigationId = cache.get(new NavigationIdCacheKey(uriPath));
+        return NOT_FOUND.equals(navigationId) ? null : navigationId;
+    }
+
+    @ManagedAttribute(description = "The number of uri paths looked up")
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    @ManagedAttribute(description = "The number of uri paths which had to be resolved, as they were not cached")
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @ManagedAttribute(description = "The share of lookups served from the cache, between 0 and 1")
+    public double getHitRate() {
+        long lookupCount = lookups.get();
+        return lookupCount == 0 ? 0 : (double) (lookupCount - misses.get()) / lookupCount;
+    }
+
+    /**
+     * Cache key of the navigation id of a path-segment. The key depends on all content read by
+     * {@link NavigationSegmentsUriHelper#parsePath(String)}.
+     */
+    private class NavigationIdCacheKey extends CacheKey<String> {
+        private final String uriPath;
+
+        NavigationIdCacheKey(String uriPath) {
+            this.uriPath = uriPath;
+        }
+
+        @Override
+        public String evaluate(Cache cache) {
+            misses.incrementAndGet();
+            Navigation navigation = navigationSegmentsUriHelper.parsePath(uriPath);
+            return navigation == null ? NOT_FOUND : String.valueOf(navigation.getContext().getContentId());
+        }
+
+        @Override
+        public String cacheClass(Cache cache, String value) {
+            return CACHE_CLASS;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || (o instanceof NavigationIdCacheKey && uriPath.equals(((NavigationIdCacheKey) o).uriPath));
+        }
+
+        @Override
+        public int hashCode() {
+            return uriPath.hashCode();
+        }
     }
 }
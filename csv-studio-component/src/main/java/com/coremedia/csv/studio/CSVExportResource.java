@@ -37,6 +37,12 @@ public class CSVExportResource {
 
   public static final String TEMPLATE_PARAMETER = "template";
 
+  /**
+   * The parameter which turns on the profiling of the export. The cost of each column and content type is returned
+   * in the response headers {@code X-CSV-Profile-Columns} and {@code X-CSV-Profile-Types}.
+   */
+  public static final String PROFILE_PARAMETER = "profile";
+
   /**
    * Sends a request for a CSV file to the preview CAE.
    */
@@ -145,7 +151,8 @@ public class CSVExportResource {
       @RequestParam(value = SearchParameterNames.FACET_FIELD, required = false) final List<String> facetFieldCriteria,
       @RequestParam(value = SearchParameterNames.FACET_QUERY, required = false) final List<String> facetQueries,
       @RequestParam(value = SearchParameterNames.SEARCH_HANDLER, required = false) String searchHandler,
-      @RequestParam(value = TEMPLATE_PARAMETER, required = false) String csvTemplate)
+      @RequestParam(value = TEMPLATE_PARAMETER, required = false) String csvTemplate,
+      @RequestParam(value = PROFILE_PARAMETER, defaultValue = "false") boolean profile)
       throws BadRequestException, IOException {
 
     // Verify that the template has been set, we do this here rather than in the
@@ -178,17 +185,20 @@ public class CSVExportResource {
         resolvedFacetQueries, searchHandler);
 
     // Use the CSVFileRetriever to request the file data from the CAE
-    CSVFileResponse csvFileResponse = csvFileRetriever.retrieveCSV(csvTemplate, result.getHits());
+    CSVFileResponse csvFileResponse = csvFileRetriever.retrieveCSV(csvTemplate, result.getHits(), profile);
 
-    // Build response, re-using Content-Disposition header value with file name
+    // Build response, re-using Content-Disposition header value with file name and the profile headers of the CAE
     if (csvFileResponse.getStatus() < 300) {
+      ResponseEntity.BodyBuilder responseBuilder = ResponseEntity.ok().cacheControl(CacheControl.noCache());
       if (csvFileResponse.getContentDispositionHeaderValue() != null) {
-        return ResponseEntity.ok().cacheControl(CacheControl.noCache())
-            .header(CSVConstants.HTTP_HEADER_CONTENT_DISPOSITION, csvFileResponse.getContentDispositionHeaderValue())
-            .contentType(MediaType.valueOf(CSVConstants.CSV_MEDIA_TYPE)).body(csvFileResponse.getData());
+        responseBuilder.header(CSVConstants.HTTP_HEADER_CONTENT_DISPOSITION,
+            csvFileResponse.getContentDispositionHeaderValue());
+      }
+      for (Map.Entry<String, String> profileHeader : csvFileResponse.getProfileHeaders().entrySet()) {
+        responseBuilder.header(profileHeader.getKey(), profileHeader.getValue());
       }
-      return ResponseEntity.ok().cacheControl(CacheControl.noCache())
-          .contentType(MediaType.valueOf(CSVConstants.CSV_MEDIA_TYPE)).body(csvFileResponse.getData());
+      return responseBuilder.contentType(MediaType.valueOf(CSVConstants.CSV_MEDIA_TYPE))
+          .body(csvFileResponse.getData());
     }
     return ResponseEntity.status(csvFileResponse.getStatus()).cacheControl(CacheControl.noCache())
         .contentType(MediaType.valueOf(CSVConstants.CSV_MEDIA_TYPE)).body(csvFileResponse.getData());
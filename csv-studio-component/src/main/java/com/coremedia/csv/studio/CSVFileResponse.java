@@ -1,5 +1,8 @@
 package com.coremedia.csv.studio;
 
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * Captures data from the response from a request to an export endpoint.
  */
@@ -20,6 +23,11 @@ public class CSVFileResponse {
    */
   private int status;
 
+  /**
+   * The profile headers of the response, if the export has been profiled.
+   */
+  private Map<String, String> profileHeaders = Collections.emptyMap();
+
   /**
    * Constructor.
    *
@@ -60,4 +68,22 @@ public class CSVFileResponse {
     return status;
   }
 
+  /**
+   * Get the profile headers of the response, if the export has been profiled.
+   *
+   * @return The profile header values, by header name
+   */
+  public Map<String, String> getProfileHeaders() {
+    return profileHeaders;
+  }
+
+  /**
+   * Set the profile headers of the response.
+   *
+   * @param profileHeaders The profile header values, by header name
+   */
+  public void setProfileHeaders(Map<String, String> profileHeaders) {
+    this.profileHeaders = profileHeaders;
+  }
+
 }
@@ -3,6 +3,9 @@ package com.coremedia.csv.studio;
 import com.coremedia.cap.common.IdHelper;
 import com.coremedia.cap.content.Content;
 import com.coremedia.csv.common.CSVConstants;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -11,18 +14,53 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Retrieves a CSV file from the preview CAE
  */
 public class CSVFileRetriever {
 
+  /**
+   * The name of the timer of the calls to the preview CAE, tagged with the HTTP status of the response.
+   */
+  public static final String METRIC_RETRIEVE = "csv.export.retrieve";
+
+  /**
+   * The name of the distribution summary of the size of the retrieved CSV files in bytes.
+   */
+  public static final String METRIC_BYTES = "csv.export.retrieve.bytes";
+
+  /**
+   * The request parameter of the CAE which turns on the profiling of an export.
+   */
+  private static final String PROFILE_PARAMETER = "profile";
+
+  /**
+   * The response headers of the CAE with the profile of an export.
+   */
+  private static final String[] PROFILE_HEADERS = {CSVConstants.HTTP_HEADER_PROFILE_COLUMNS,
+          CSVConstants.HTTP_HEADER_PROFILE_TYPES};
+
+  /**
+   * The registry in which the calls to the preview CAE are recorded.
+   */
+  private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+  /**
+   * The size of the retrieved CSV files, registered by {@link #setMeterRegistry(MeterRegistry)}.
+   */
+  private DistributionSummary bytesSummary = createBytesSummary(meterRegistry);
+
   /**
    * The URL of the preview CAE.
    */
@@ -53,14 +91,32 @@ public class CSVFileRetriever {
     this.previewRestUrl = previewRestUrl;
   }
 
+  /**
+   * Sets the registry in which the calls to the preview CAE are recorded. Set by Spring if the actuator of Studio
+   * provides a registry, otherwise the calls are recorded in the global registry of Micrometer.
+   *
+   * @param meterRegistry the registry
+   */
+  @Autowired(required = false)
+  public void setMeterRegistry(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    this.bytesSummary = createBytesSummary(meterRegistry);
+  }
+
+  private static DistributionSummary createBytesSummary(MeterRegistry meterRegistry) {
+    return DistributionSummary.builder(METRIC_BYTES).baseUnit("bytes").register(meterRegistry);
+  }
+
   /**
    * Queries the CSV export endpoint on the preview CAE and returns a CSV file.
    *
    * @param contents The content items to include in the CSV
+   * @param profile  Whether the CAE should profile the export and return the cost of each column and content type
    * @return A CSVFileResponse containing the bytes and name information of the returned file
    * @throws IOException Thrown when a request to the CAE fails
    */
-  public CSVFileResponse retrieveCSV(String csvTemplate, List<Content> contents) throws IOException {
+  public CSVFileResponse retrieveCSV(String csvTemplate, List<Content> contents, boolean profile)
+          throws IOException {
     // Create a comma-separated list of content IDs for the request body
     StringBuilder contentIdsList = new StringBuilder();
     contentIdsList.append('[');
@@ -77,13 +133,16 @@ public class CSVFileRetriever {
 
     // Set up a POST request to the content set export endpoint
     CloseableHttpClient client = HttpClients.createDefault();
-    String requestUrl = getPreviewUrlPrefix() + "/contentsetexport/"+ URLEncoder.encode(csvTemplate, "UTF-8");
+    String requestUrl = getPreviewUrlPrefix() + "/contentsetexport/"+ URLEncoder.encode(csvTemplate, "UTF-8")
+            + (profile ? "?" + PROFILE_PARAMETER + "=true" : "");
     HttpPost httpPost = new HttpPost(requestUrl);
     httpPost.setHeader("Content-Type", "application/json");
     HttpEntity requestEntity = new StringEntity(contentIdsList.toString());
     httpPost.setEntity(requestEntity);
 
     CloseableHttpResponse response = null;
+    long start = System.nanoTime();
+    String status = "error";
     try {
       // Execute request and extract info from response
       response = client.execute(httpPost);
@@ -91,8 +150,25 @@ public class CSVFileRetriever {
       String headerValue = contentDispositionHeader == null ? null : contentDispositionHeader.getValue();
       HttpEntity responseEntity = response.getEntity();
       byte[] file = responseEntity == null ? null : IOUtils.toByteArray(responseEntity.getContent());
-      return new CSVFileResponse(file, response.getStatusLine().getStatusCode(), headerValue);
+      status = Integer.toString(response.getStatusLine().getStatusCode());
+      if (file != null) {
+        bytesSummary.record(file.length);
+      }
+      CSVFileResponse csvFileResponse = new CSVFileResponse(file, response.getStatusLine().getStatusCode(),
+              headerValue);
+      if (profile) {
+        Map<String, String> profileHeaders = new LinkedHashMap<>();
+        for (String profileHeader : PROFILE_HEADERS) {
+          Header header = response.getFirstHeader(profileHeader);
+          if (header != null) {
+            profileHeaders.put(profileHeader, header.getValue());
+          }
+        }
+        csvFileResponse.setProfileHeaders(profileHeaders);
+      }
+      return csvFileResponse;
     } finally {
+      meterRegistry.timer(METRIC_RETRIEVE, "status", status).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
       if (response != null) {
         response.close();
       }